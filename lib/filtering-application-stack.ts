@@ -77,14 +77,12 @@ export class FilteringApplicationStack extends cdk.Stack {
         })
         currentRegion.grantRead(filteringApplicationRole)
 
+        // the filtering server and the advertising server resolve all their parameters in one call,
+        // neither reads a single parameter with ssm:GetParameter any more
         filteringApplicationRole.addToPolicy( new iam.PolicyStatement({
-            actions: ["ssm:GetParameter"],
+            actions: ["ssm:GetParametersByPath"],
             resources:[
-                `arn:aws:ssm:${cdk.Stack.of(this).region}:${cdk.Stack.of(this).account}:parameter/aik/xgboost/path`,
-                `arn:aws:ssm:${cdk.Stack.of(this).region}:${cdk.Stack.of(this).account}:parameter/aik/pipelineModelArtifactPath`,
-                `arn:aws:ssm:${cdk.Stack.of(this).region}:${cdk.Stack.of(this).account}:parameter/aik/pipelineModelArtifactSchemaPath`,
-                `arn:aws:ssm:${cdk.Stack.of(this).region}:${cdk.Stack.of(this).account}:parameter/aik/inference_data`,
-
+                `arn:aws:ssm:${cdk.Stack.of(this).region}:${cdk.Stack.of(this).account}:parameter/aik`,
             ]
         }))
 
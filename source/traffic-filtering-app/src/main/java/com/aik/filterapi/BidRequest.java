@@ -25,6 +25,7 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
   private static final org.apache.thrift.protocol.TField PAYING_PRICE_FIELD_DESC = new org.apache.thrift.protocol.TField("payingPrice", org.apache.thrift.protocol.TType.I64, (short)9);
   private static final org.apache.thrift.protocol.TField USER_AGENT_FIELD_DESC = new org.apache.thrift.protocol.TField("userAgent", org.apache.thrift.protocol.TType.STRING, (short)10);
   private static final org.apache.thrift.protocol.TField DEVICE_TYPE_ID_FIELD_DESC = new org.apache.thrift.protocol.TField("deviceTypeId", org.apache.thrift.protocol.TType.I32, (short)11);
+  private static final org.apache.thrift.protocol.TField DEADLINE_MS_FIELD_DESC = new org.apache.thrift.protocol.TField("deadlineMs", org.apache.thrift.protocol.TType.I64, (short)12);
 
   private static final org.apache.thrift.scheme.SchemeFactory STANDARD_SCHEME_FACTORY = new BidRequestStandardSchemeFactory();
   private static final org.apache.thrift.scheme.SchemeFactory TUPLE_SCHEME_FACTORY = new BidRequestTupleSchemeFactory();
@@ -39,7 +40,15 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
   public long biddingPrice; // required
   public long payingPrice; // required
   public @org.apache.thrift.annotation.Nullable java.lang.String userAgent; // required
-  public int deviceTypeId; // required
+  /**
+   * derived by the server from the user agent when it is not set
+   */
+  public int deviceTypeId; // optional
+  /**
+   * time after which the response is useless to the caller, in milliseconds since the epoch,
+   * an expired request is answered with the default likelihood without being scored
+   */
+  public long deadlineMs; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
@@ -53,7 +62,15 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
     BIDDING_PRICE((short)8, "biddingPrice"),
     PAYING_PRICE((short)9, "payingPrice"),
     USER_AGENT((short)10, "userAgent"),
-    DEVICE_TYPE_ID((short)11, "deviceTypeId");
+    /**
+     * derived by the server from the user agent when it is not set
+     */
+    DEVICE_TYPE_ID((short)11, "deviceTypeId"),
+    /**
+     * time after which the response is useless to the caller, in milliseconds since the epoch,
+     * an expired request is answered with the default likelihood without being scored
+     */
+    DEADLINE_MS((short)12, "deadlineMs");
 
     private static final java.util.Map<java.lang.String, _Fields> byName = new java.util.HashMap<java.lang.String, _Fields>();
 
@@ -91,6 +108,8 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
           return USER_AGENT;
         case 11: // DEVICE_TYPE_ID
           return DEVICE_TYPE_ID;
+        case 12: // DEADLINE_MS
+          return DEADLINE_MS;
         default:
           return null;
       }
@@ -136,7 +155,9 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
   private static final int __BIDDINGPRICE_ISSET_ID = 1;
   private static final int __PAYINGPRICE_ISSET_ID = 2;
   private static final int __DEVICETYPEID_ISSET_ID = 3;
+  private static final int __DEADLINEMS_ISSET_ID = 4;
   private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.DEVICE_TYPE_ID,_Fields.DEADLINE_MS};
   public static final java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     java.util.Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new java.util.EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -160,8 +181,10 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
     tmpMap.put(_Fields.USER_AGENT, new org.apache.thrift.meta_data.FieldMetaData("userAgent", org.apache.thrift.TFieldRequirementType.DEFAULT, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.STRING)));
-    tmpMap.put(_Fields.DEVICE_TYPE_ID, new org.apache.thrift.meta_data.FieldMetaData("deviceTypeId", org.apache.thrift.TFieldRequirementType.DEFAULT, 
+    tmpMap.put(_Fields.DEVICE_TYPE_ID, new org.apache.thrift.meta_data.FieldMetaData("deviceTypeId", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I32)));
+    tmpMap.put(_Fields.DEADLINE_MS, new org.apache.thrift.meta_data.FieldMetaData("deadlineMs", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
     metaDataMap = java.util.Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(BidRequest.class, metaDataMap);
   }
@@ -179,8 +202,7 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
     java.lang.String advertiserId,
     long biddingPrice,
     long payingPrice,
-    java.lang.String userAgent,
-    int deviceTypeId)
+    java.lang.String userAgent)
   {
     this();
     this.bidId = bidId;
@@ -196,8 +218,6 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
     this.payingPrice = payingPrice;
     setPayingPriceIsSet(true);
     this.userAgent = userAgent;
-    this.deviceTypeId = deviceTypeId;
-    setDeviceTypeIdIsSet(true);
   }
 
   /**
@@ -230,6 +250,7 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
       this.userAgent = other.userAgent;
     }
     this.deviceTypeId = other.deviceTypeId;
+    this.deadlineMs = other.deadlineMs;
   }
 
   public BidRequest deepCopy() {
@@ -253,6 +274,8 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
     this.userAgent = null;
     setDeviceTypeIdIsSet(false);
     this.deviceTypeId = 0;
+    setDeadlineMsIsSet(false);
+    this.deadlineMs = 0;
   }
 
   @org.apache.thrift.annotation.Nullable
@@ -499,10 +522,16 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
     }
   }
 
+  /**
+   * derived by the server from the user agent when it is not set
+   */
   public int getDeviceTypeId() {
     return this.deviceTypeId;
   }
 
+  /**
+   * derived by the server from the user agent when it is not set
+   */
   public BidRequest setDeviceTypeId(int deviceTypeId) {
     this.deviceTypeId = deviceTypeId;
     setDeviceTypeIdIsSet(true);
@@ -522,6 +551,37 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
     __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __DEVICETYPEID_ISSET_ID, value);
   }
 
+  /**
+   * time after which the response is useless to the caller, in milliseconds since the epoch,
+   * an expired request is answered with the default likelihood without being scored
+   */
+  public long getDeadlineMs() {
+    return this.deadlineMs;
+  }
+
+  /**
+   * time after which the response is useless to the caller, in milliseconds since the epoch,
+   * an expired request is answered with the default likelihood without being scored
+   */
+  public BidRequest setDeadlineMs(long deadlineMs) {
+    this.deadlineMs = deadlineMs;
+    setDeadlineMsIsSet(true);
+    return this;
+  }
+
+  public void unsetDeadlineMs() {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.clearBit(__isset_bitfield, __DEADLINEMS_ISSET_ID);
+  }
+
+  /** Returns true if field deadlineMs is set (has been assigned a value) and false otherwise */
+  public boolean isSetDeadlineMs() {
+    return org.apache.thrift.EncodingUtils.testBit(__isset_bitfield, __DEADLINEMS_ISSET_ID);
+  }
+
+  public void setDeadlineMsIsSet(boolean value) {
+    __isset_bitfield = org.apache.thrift.EncodingUtils.setBit(__isset_bitfield, __DEADLINEMS_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, @org.apache.thrift.annotation.Nullable java.lang.Object value) {
     switch (field) {
     case BID_ID:
@@ -612,6 +672,14 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
       }
       break;
 
+    case DEADLINE_MS:
+      if (value == null) {
+        unsetDeadlineMs();
+      } else {
+        setDeadlineMs((java.lang.Long)value);
+      }
+      break;
+
     }
   }
 
@@ -651,6 +719,9 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
     case DEVICE_TYPE_ID:
       return getDeviceTypeId();
 
+    case DEADLINE_MS:
+      return getDeadlineMs();
+
     }
     throw new java.lang.IllegalStateException();
   }
@@ -684,6 +755,8 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
       return isSetUserAgent();
     case DEVICE_TYPE_ID:
       return isSetDeviceTypeId();
+    case DEADLINE_MS:
+      return isSetDeadlineMs();
     }
     throw new java.lang.IllegalStateException();
   }
@@ -791,8 +864,8 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
         return false;
     }
 
-    boolean this_present_deviceTypeId = true;
-    boolean that_present_deviceTypeId = true;
+    boolean this_present_deviceTypeId = true && this.isSetDeviceTypeId();
+    boolean that_present_deviceTypeId = true && that.isSetDeviceTypeId();
     if (this_present_deviceTypeId || that_present_deviceTypeId) {
       if (!(this_present_deviceTypeId && that_present_deviceTypeId))
         return false;
@@ -800,6 +873,15 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
         return false;
     }
 
+    boolean this_present_deadlineMs = true && this.isSetDeadlineMs();
+    boolean that_present_deadlineMs = true && that.isSetDeadlineMs();
+    if (this_present_deadlineMs || that_present_deadlineMs) {
+      if (!(this_present_deadlineMs && that_present_deadlineMs))
+        return false;
+      if (this.deadlineMs != that.deadlineMs)
+        return false;
+    }
+
     return true;
   }
 
@@ -841,7 +923,13 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
     if (isSetUserAgent())
       hashCode = hashCode * 8191 + userAgent.hashCode();
 
-    hashCode = hashCode * 8191 + deviceTypeId;
+    hashCode = hashCode * 8191 + ((isSetDeviceTypeId()) ? 131071 : 524287);
+    if (isSetDeviceTypeId())
+      hashCode = hashCode * 8191 + deviceTypeId;
+
+    hashCode = hashCode * 8191 + ((isSetDeadlineMs()) ? 131071 : 524287);
+    if (isSetDeadlineMs())
+      hashCode = hashCode * 8191 + org.apache.thrift.TBaseHelper.hashCode(deadlineMs);
 
     return hashCode;
   }
@@ -964,6 +1052,16 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
         return lastComparison;
       }
     }
+    lastComparison = java.lang.Boolean.compare(isSetDeadlineMs(), other.isSetDeadlineMs());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetDeadlineMs()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.deadlineMs, other.deadlineMs);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -1052,10 +1150,18 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
       sb.append(this.userAgent);
     }
     first = false;
-    if (!first) sb.append(", ");
-    sb.append("deviceTypeId:");
-    sb.append(this.deviceTypeId);
-    first = false;
+    if (isSetDeviceTypeId()) {
+      if (!first) sb.append(", ");
+      sb.append("deviceTypeId:");
+      sb.append(this.deviceTypeId);
+      first = false;
+    }
+    if (isSetDeadlineMs()) {
+      if (!first) sb.append(", ");
+      sb.append("deadlineMs:");
+      sb.append(this.deadlineMs);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -1189,6 +1295,14 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 12: // DEADLINE_MS
+            if (schemeField.type == org.apache.thrift.protocol.TType.I64) {
+              struct.deadlineMs = iprot.readI64();
+              struct.setDeadlineMsIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -1248,9 +1362,16 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
         oprot.writeString(struct.userAgent);
         oprot.writeFieldEnd();
       }
-      oprot.writeFieldBegin(DEVICE_TYPE_ID_FIELD_DESC);
-      oprot.writeI32(struct.deviceTypeId);
-      oprot.writeFieldEnd();
+      if (struct.isSetDeviceTypeId()) {
+        oprot.writeFieldBegin(DEVICE_TYPE_ID_FIELD_DESC);
+        oprot.writeI32(struct.deviceTypeId);
+        oprot.writeFieldEnd();
+      }
+      if (struct.isSetDeadlineMs()) {
+        oprot.writeFieldBegin(DEADLINE_MS_FIELD_DESC);
+        oprot.writeI64(struct.deadlineMs);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -1302,7 +1423,10 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
       if (struct.isSetDeviceTypeId()) {
         optionals.set(10);
       }
-      oprot.writeBitSet(optionals, 11);
+      if (struct.isSetDeadlineMs()) {
+        optionals.set(11);
+      }
+      oprot.writeBitSet(optionals, 12);
       if (struct.isSetBidId()) {
         oprot.writeString(struct.bidId);
       }
@@ -1336,12 +1460,15 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
       if (struct.isSetDeviceTypeId()) {
         oprot.writeI32(struct.deviceTypeId);
       }
+      if (struct.isSetDeadlineMs()) {
+        oprot.writeI64(struct.deadlineMs);
+      }
     }
 
     @Override
     public void read(org.apache.thrift.protocol.TProtocol prot, BidRequest struct) throws org.apache.thrift.TException {
       org.apache.thrift.protocol.TTupleProtocol iprot = (org.apache.thrift.protocol.TTupleProtocol) prot;
-      java.util.BitSet incoming = iprot.readBitSet(11);
+      java.util.BitSet incoming = iprot.readBitSet(12);
       if (incoming.get(0)) {
         struct.bidId = iprot.readString();
         struct.setBidIdIsSet(true);
@@ -1386,6 +1513,10 @@ public class BidRequest implements org.apache.thrift.TBase<BidRequest, BidReques
         struct.deviceTypeId = iprot.readI32();
         struct.setDeviceTypeIdIsSet(true);
       }
+      if (incoming.get(11)) {
+        struct.deadlineMs = iprot.readI64();
+        struct.setDeadlineMsIsSet(true);
+      }
     }
   }
 
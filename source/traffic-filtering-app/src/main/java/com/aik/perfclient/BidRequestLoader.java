@@ -0,0 +1,151 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.perfclient;
+
+import com.aik.filterapi.BidRequest;
+import com.aik.prediction.DeviceTypeClassifier;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Replay dataset of the performance client, one JSON bid request per line.
+ * The lines are streamed from the file and parsed in parallel with the jackson streaming parser, the file is
+ * split between the threads of the common pool and only the parsed requests are kept in memory, so a dataset
+ * of millions of requests loads in seconds. The requests keep the order of the file.
+ */
+public class BidRequestLoader {
+
+    private static final Logger logger = LogManager.getLogger(BidRequestLoader.class.getName());
+    // thread safe once configured, every line gets its own parser
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final DeviceTypeClassifier deviceTypeClassifier;
+    private final LongAdder malformedLines = new LongAdder();
+
+    /**
+     * @param deviceTypeClassifier sets the device type of every request while loading, null to leave it
+     *                             unset for the server to derive it from the user agent
+     */
+    public BidRequestLoader(DeviceTypeClassifier deviceTypeClassifier) {
+        this.deviceTypeClassifier = deviceTypeClassifier;
+    }
+
+    /**
+     * load every request of the file, the malformed lines are logged and skipped
+     * @param path the JSON lines file
+     * @return the requests in the order of the file
+     */
+    public List<BidRequest> load(Path path) throws IOException {
+        logger.warn("start loading data in memory from " + path);
+        long start = System.nanoTime();
+        malformedLines.reset();
+        List<BidRequest> bidRequests;
+        try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
+            bidRequests = lines.parallel()
+                    .filter(line -> !line.isEmpty())
+                    .map(this::parseLine)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+        }
+        if (malformedLines.sum() > 0) {
+            logger.warn(malformedLines.sum() + " malformed lines skipped");
+        }
+        logger.warn(String.format("end loading data in memory %d requests in %.3f s",
+                bidRequests.size(), (System.nanoTime() - start) / 1e9));
+        return bidRequests;
+    }
+
+    private BidRequest parseLine(String line) {
+        try {
+            BidRequest bidRequest = parse(line);
+            if (deviceTypeClassifier != null) {
+                bidRequest.setDeviceTypeId(deviceTypeClassifier.deviceTypeId(bidRequest.userAgent));
+            }
+            return bidRequest;
+        } catch (IOException | NumberFormatException e) {
+            malformedLines.increment();
+            logger.debug("malformed line skipped: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * parse one line in the format of the training dataset, the missing fields are empty or 0
+     * and the device type is left unset
+     */
+    static BidRequest parse(String line) throws IOException {
+        BidRequest bidRequest = new BidRequest();
+        bidRequest.bidId = "";
+        bidRequest.hour = "";
+        bidRequest.advertiserId = "";
+        bidRequest.domainId = "";
+        bidRequest.regionId = "";
+        bidRequest.cityId = "";
+        bidRequest.userAgent = "";
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "BidID":
+                        bidRequest.bidId = parser.getText();
+                        break;
+                    case "dow":
+                        bidRequest.dayOfWeek = Integer.parseInt(parser.getText());
+                        break;
+                    case "hour":
+                        bidRequest.hour = parser.getText();
+                        break;
+                    case "AdvertiserID":
+                        bidRequest.advertiserId = parser.getText();
+                        break;
+                    case "Domain":
+                        bidRequest.domainId = parser.getText();
+                        break;
+                    case "RegionID":
+                        bidRequest.regionId = parser.getText();
+                        break;
+                    case "CityID":
+                        bidRequest.cityId = parser.getText();
+                        break;
+                    case "BiddingPrice":
+                        bidRequest.biddingPrice = Long.parseLong(parser.getText());
+                        break;
+                    case "PayingPrice":
+                        bidRequest.payingPrice = Long.parseLong(parser.getText());
+                        break;
+                    case "UserAgent":
+                        bidRequest.userAgent = parser.getText();
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        return bidRequest;
+    }
+}
@@ -8,10 +8,12 @@ package com.aik.perfclient;
 import com.aik.filterapi.BidRequest;
 import com.aik.filterapi.BidRequestFilter;
 import com.aik.filterapi.BidResponse;
+import com.aik.prediction.Configuration;
+import com.aik.prediction.DeviceTypeClassifier;
+import com.aik.prediction.InferenceServer;
 import com.google.common.math.Quantiles;
 import com.timgroup.statsd.NonBlockingStatsDClient;
 import com.timgroup.statsd.StatsDClient;
-import is.tagomor.woothee.Classifier;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.thrift.TException;
@@ -19,24 +21,21 @@ import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
+import org.apache.thrift.transport.TTransportException;
+import org.apache.thrift.transport.layered.TFramedTransport;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
-import software.amazon.awssdk.services.ssm.SsmClient;
-import software.amazon.awssdk.services.ssm.model.GetParameterRequest;
-import software.amazon.awssdk.services.ssm.model.GetParameterResponse;
-import software.amazon.awssdk.services.ssm.model.SsmException;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -46,40 +45,70 @@ import java.util.stream.IntStream;
 public class MultiThreadedClient {
     private static final Logger logger = LogManager.getLogger(MultiThreadedClient.class.getName());
     private static final StatsDClient statsd = new NonBlockingStatsDClient("adserver_client", "localhost", 8125);
-    private static final Random randDeviceType = new Random();
-    private static final int maxDeviceType = 5;
+    private static final Properties prop = loadProperties();
+    // the parameters are resolved once for the whole run
+    private static final Configuration configuration = new Configuration(prop, Long.MAX_VALUE);
+    // tmax of the simulated ad server, 0 to send the requests without deadline
+    private static final long deadlineMs = Long.parseLong(prop.getProperty("aik.perfclient.deadline.ms", "0"));
+    // the requests of an open-loop connection are counted late when sent more than this after their scheduled time
+    private static final long LATE_SEND_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // calls in flight per connection of the pipelined client, 0 for one blocking client per thread
+    private static final int pipelineDepth = Integer.parseInt(prop.getProperty("aik.perfclient.pipeline.depth", "0"));
+    // a pipelined connection whose oldest call is not answered within this is dropped, its calls counted as failed
+    private static final long responseTimeoutMs = Long.parseLong(prop.getProperty("aik.perfclient.response.timeout.ms", "10000"));
+    // one virtual thread per blocking connection instead of a platform thread each
+    private static final boolean virtualThreads = Boolean.parseBoolean(prop.getProperty("aik.perfclient.virtual.threads", "false"));
 
 
     public static void main(String[] args) {
         logger.warn("Starting client");
-        logger.warn("Sleep 30 s");
-
-        try {
-            TimeUnit.SECONDS.sleep(30);
-        } catch (InterruptedException e) {
-            logger.error("Failed while waiting");
-            logger.catching(e);
-        }
         logger.info("Start downloading test data");
         try {
             int nbThread = 1;
             int nbTest = 100000;
+            // 0 runs the closed loop, each connection sending its next request once the previous one is answered
+            double targetQps = Double.parseDouble(prop.getProperty("aik.perfclient.target.qps", "0"));
+            // a local replay dataset, empty to download the inference data from S3
+            String inputPath = prop.getProperty("aik.perfclient.input.path", "");
             String inputRequestUri = "" ;
             if (args.length > 0) {
                 nbThread = Integer.parseInt(args[1]);
                 nbTest = Integer.parseInt(args[2]);
-                inputRequestUri = getValueFromSsmParameter("/aik/inference_data");
+                if (inputPath.isEmpty()) {
+                    inputRequestUri = getValueFromSsmParameter("/aik/inference_data");
+                }
+            }
+            if (args.length > 3) {
+                targetQps = Double.parseDouble(args[3]);
             }
 
             logger.warn("nbThread " + nbThread ) ;
             logger.warn("nbTest " + nbTest ) ;
+            logger.warn("targetQps " + targetQps ) ;
 
-            //  download file from s3
-            AbstractMap.SimpleEntry<String,String> s3URIParsed  = MultiThreadedClient.parseS3Uri(inputRequestUri);
-            MultiThreadedClient.downloadTestFile(s3URIParsed.getKey(),s3URIParsed.getValue(),"./.tmp/test.json") ;
-            ArrayList<BidRequest> dataset =  MultiThreadedClient.loadData("./.tmp/test.json") ;
-
-            perform(nbThread,nbTest,dataset);
+            if (inputPath.isEmpty()) {
+                //  download file from s3
+                AbstractMap.SimpleEntry<String,String> s3URIParsed  = MultiThreadedClient.parseS3Uri(inputRequestUri);
+                MultiThreadedClient.downloadTestFile(s3URIParsed.getKey(),s3URIParsed.getValue(),"./.tmp/test.json") ;
+                inputPath = "./.tmp/test.json";
+            }
+            List<BidRequest> dataset =  MultiThreadedClient.loadData(inputPath) ;
+
+            awaitServer(Long.parseLong(prop.getProperty("aik.perfclient.ready.timeout.s", "300")));
+            double p99TargetMs = Double.parseDouble(prop.getProperty("aik.perfclient.sweep.p99.target.ms", "0"));
+            if (p99TargetMs > 0) {
+                SaturationSweep sweep = new SaturationSweep(nbThread, dataset, p99TargetMs,
+                        Double.parseDouble(prop.getProperty("aik.perfclient.sweep.step.duration.s", "30")));
+                double capacity = sweep.run(
+                        Double.parseDouble(prop.getProperty("aik.perfclient.sweep.min.qps", "500")),
+                        Double.parseDouble(prop.getProperty("aik.perfclient.sweep.max.qps", "50000")),
+                        Integer.parseInt(prop.getProperty("aik.perfclient.sweep.steps", "8")));
+                SaturationSweep.publish(capacity, p99TargetMs, statsd);
+            } else if (targetQps > 0 || pipelineDepth > 0) {
+                performOpenLoop(nbThread, nbTest, dataset, targetQps);
+            } else {
+                perform(nbThread,nbTest,dataset);
+            }
 
 
             logger.info("Ending client");
@@ -100,8 +129,8 @@ public class MultiThreadedClient {
         return filteringResult;
     }
 
-    private static void perform(int nbThread,int nbTest, ArrayList<BidRequest> bidRequests) throws TException {
-        ExecutorService executorService = Executors.newFixedThreadPool(nbThread);
+    private static void perform(int nbThread,int nbTest, List<BidRequest> bidRequests) throws TException {
+        ExecutorService executorService = connectionExecutor(nbThread);
         List<Callable<List<FilteringResult>>> callables = new ArrayList<>();
         logger.warn("starting load test");
         Instant start = Instant.now();
@@ -111,7 +140,7 @@ public class MultiThreadedClient {
             Callable<List<FilteringResult>> callable = () -> {
                 TTransport transport;
 
-                transport = new TSocket("localhost", 9090);
+                transport = openTransport();
                 transport.open();
                 TProtocol protocol = new TBinaryProtocol(transport);
                 BidRequestFilter.Client client = new BidRequestFilter.Client(protocol);
@@ -127,6 +156,143 @@ public class MultiThreadedClient {
             };
             callables.add(callable) ;
         }
+        report(collect(executorService, callables), start, nbTest);
+    }
+
+    /**
+     * open-loop load test: every connection sends its requests on a fixed schedule, whatever the response time.
+     * The latency is measured from the time a request was scheduled, not from the time it could be sent, so the
+     * wait behind a slow response is counted as it is by a real exchange instead of being hidden (coordinated omission).
+     * A blocking connection only has one request in flight, use enough threads for the schedule to be kept at the
+     * target rate, or the pipelined client when aik.perfclient.pipeline.depth is set
+     * @param targetQps the rate of requests over all the connections, 0 to keep the pipelines full
+     */
+    private static void performOpenLoop(int nbThread, int nbTest, List<BidRequest> bidRequests, double targetQps) {
+        Instant start = Instant.now();
+        OpenLoopRun run = runOpenLoop(nbThread, nbTest, bidRequests, targetQps);
+        if (run.getLateSends() > 0) {
+            logger.warn(run.getLateSends() + " requests sent late, the latencies include the wait of the client");
+        }
+        report(run.getResults(), start, nbTest);
+    }
+
+    /**
+     * send nbTest requests on the open-loop schedule of the target rate
+     * @return the latency and likelihood of every request answered, and the number of requests sent late
+     */
+    static OpenLoopRun runOpenLoop(int nbThread, int nbTest, List<BidRequest> bidRequests, double targetQps) {
+        if (pipelineDepth > 0) {
+            return runPipelined(nbThread, nbTest, bidRequests, targetQps);
+        }
+        ExecutorService executorService = connectionExecutor(nbThread);
+        List<Callable<List<FilteringResult>>> callables = new ArrayList<>();
+        LongAdder totalLateSends = new LongAdder();
+        long periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) * nbThread / targetQps);
+        int nbTestPerThread = nbTest / nbThread;
+        logger.warn("starting open-loop load test at " + targetQps + " qps, one request every " + periodNanos + " ns per connection");
+
+        for (int curentThreadIdx = 0; curentThreadIdx < nbThread; curentThreadIdx++) {
+            final int threadId = curentThreadIdx ;
+            Callable<List<FilteringResult>> callable = () -> {
+                TTransport transport = openTransport();
+                transport.open();
+                BidRequestFilter.Client client = new BidRequestFilter.Client(new TBinaryProtocol(transport));
+                Random random = new Random(threadId);
+                List<FilteringResult> filteringResults = new ArrayList<>(nbTestPerThread);
+                int lateSends = 0;
+                // the connections are spread evenly over the period
+                long scheduleStart = System.nanoTime() + threadId * periodNanos / nbThread;
+                for (int i = 0; i < nbTestPerThread; i++) {
+                    long scheduled = scheduleStart + i * periodNanos;
+                    long wait;
+                    while ((wait = scheduled - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    if (-wait > LATE_SEND_NANOS) {
+                        lateSends++;
+                    }
+                    FilteringResult filteringResult = performScheduled(client,
+                            bidRequests.get(random.nextInt(bidRequests.size())), scheduled);
+                    if (filteringResult != null) {
+                        filteringResults.add(filteringResult);
+                    }
+                }
+                transport.close();
+                totalLateSends.add(lateSends);
+                if (lateSends > 0) {
+                    logger.warn("connection " + threadId + " sent " + lateSends + " requests late, add threads to keep the target rate");
+                }
+                return filteringResults;
+            };
+            callables.add(callable) ;
+        }
+        List<FilteringResult> results = collect(executorService, callables);
+        return new OpenLoopRun(results, totalLateSends.sum());
+    }
+
+    /**
+     * executor running one blocking connection per task. A virtual thread is parked, not blocked, while its
+     * connection waits for the server, so tens of thousands of connections run on a few carrier threads
+     * where a fixed pool needs a platform thread and its stack for each of them
+     * @param nbThread the number of connections
+     */
+    private static ExecutorService connectionExecutor(int nbThread) {
+        if (virtualThreads) {
+            logger.warn("running the " + nbThread + " connections on virtual threads");
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newFixedThreadPool(nbThread);
+    }
+
+    /**
+     * send the requests from a single event loop thread, nbThread connections each keeping up to pipelineDepth calls in flight
+     * @param targetQps the rate over all the connections, 0 to keep every pipeline full
+     */
+    private static OpenLoopRun runPipelined(int nbThread, int nbTest, List<BidRequest> bidRequests, double targetQps) {
+        if (!selectorServer()) {
+            logger.error("the pipelined client sends framed calls, it requires the selector server");
+            return new OpenLoopRun(Collections.emptyList(), 0);
+        }
+        int port = Integer.parseInt(prop.getProperty("aik.inference.server.port", "9090"));
+        logger.warn("starting pipelined load test on " + nbThread + " connections, " + pipelineDepth + " calls in flight per connection");
+        try (PipelinedClient client = new PipelinedClient("localhost", port, nbThread, pipelineDepth, deadlineMs,
+                responseTimeoutMs)) {
+            List<FilteringResult> results = client.run(bidRequests, nbTest, targetQps);
+            return new OpenLoopRun(results, client.getLateSends());
+        } catch (IOException | TException e) {
+            logger.error("pipelined load test failed");
+            logger.catching(e);
+            return new OpenLoopRun(Collections.emptyList(), 0);
+        }
+    }
+
+    /**
+     * send one bid request of the open-loop schedule
+     * @param scheduled the System.nanoTime at which the request was due
+     * @return the latency since the request was due, null when the call failed
+     */
+    private static FilteringResult performScheduled(BidRequestFilter.Client client, BidRequest bidRequest, long scheduled) {
+        try {
+            if (deadlineMs > 0) {
+                bidRequest = bidRequest.deepCopy().setDeadlineMs(System.currentTimeMillis() + deadlineMs);
+            }
+            BidResponse response = client.filter(bidRequest);
+            long latencyNanos = System.nanoTime() - scheduled;
+            statsd.recordExecutionTime("adserver_latency_ms", TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+            statsd.recordGaugeValue("likelihood_to_bid", response.likelihoodToBid);
+            return new FilteringResult(latencyNanos / 1000000.0, response.likelihoodToBid);
+        } catch (TException e) {
+            logger.error("Exception while filtering bid request");
+            logger.catching(e);
+            return null;
+        }
+    }
+
+    /**
+     * run the load test threads until they are all done
+     * @return the results of every thread
+     */
+    private static List<FilteringResult> collect(ExecutorService executorService, List<Callable<List<FilteringResult>>> callables) {
         List<Future<List<FilteringResult>>> result = null ;
         try {
             result = executorService.invokeAll(callables) ;
@@ -146,7 +312,18 @@ public class MultiThreadedClient {
             }
             return filteringResults;
         }).filter(Objects::nonNull).flatMap(List::stream).collect(Collectors.toList());
+        executorService.shutdown();
+        return dataset;
+    }
 
+    /**
+     * log the throughput and the latency distribution of all the requests of a load test
+     */
+    private static void report(List<FilteringResult> dataset, Instant start, int nbTest) {
+        if (dataset.isEmpty()) {
+            logger.error("no bid request answered");
+            return;
+        }
         logger.warn("starting load end");
 
 
@@ -163,18 +340,72 @@ public class MultiThreadedClient {
 
         double p99ExecutionTime = Quantiles.percentiles().index(99).compute(datasetExecutionTime);
         double p95ExecutionTime = Quantiles.percentiles().index(95).compute(datasetExecutionTime);
+        double p999ExecutionTime = Quantiles.scale(1000).index(999).compute(datasetExecutionTime);
         logger.warn("------------ execution time -------------");
         logger.warn("Mean execution time (ms) = " + execTimeStatistics.getAverage());
         logger.warn("Max execution time (ms) = " + execTimeStatistics.getMax());
         logger.warn("Min execution time (ms) = " + execTimeStatistics.getMin());
+        logger.warn("p999 execution time (ms) = " + p999ExecutionTime);
         logger.warn("p99 execution time (ms) = " + p99ExecutionTime);
         logger.warn("p95 execution time (ms) = " + p95ExecutionTime);
         logger.warn("------------ likelihood -------------");
         logger.warn("Mean likelihood time (ms) = " + likelihoodStatistics.getAverage());
         logger.warn("Max likelihood time (ms) = " + likelihoodStatistics.getMax());
         logger.warn("Min likelihood time (ms) = " + likelihoodStatistics.getMin());
+    }
 
-        executorService.shutdown();
+    /**
+     * poll the server until it accepts connections, it opens its socket once the model is loaded and warmed up
+     * @param timeoutS how long to wait before giving up
+     */
+    private static void awaitServer(long timeoutS) throws TException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutS);
+        while (true) {
+            try {
+                TTransport transport = openTransport();
+                transport.open();
+                transport.close();
+                logger.warn("server ready");
+                return;
+            } catch (TTransportException e) {
+                if (System.nanoTime() - deadline > 0) {
+                    throw e;
+                }
+                logger.info("server not ready yet, retrying");
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+    }
+
+    /**
+     * open a transport matching the server engine, the selector server only understands framed messages
+     * @return the transport to the inference server
+     */
+    private static TTransport openTransport() throws TException {
+        int port = Integer.parseInt(prop.getProperty("aik.inference.server.port", "9090"));
+        TTransport transport = new TSocket("localhost", port);
+        return selectorServer() ? new TFramedTransport(transport) : transport;
+    }
+
+    /**
+     * @return true when the server runs the selector engine, opted in with aik.inference.server.mode
+     */
+    private static boolean selectorServer() {
+        return InferenceServer.SELECTOR_MODE.equals(prop.getProperty("aik.inference.server.mode", InferenceServer.THREAD_POOL_MODE));
+    }
+
+    private static Properties loadProperties() {
+        Properties prop = new Properties();
+        try (InputStream input = MultiThreadedClient.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (input == null) {
+                logger.error("Sorry, unable to find config.properties");
+                return prop;
+            }
+            prop.load(input);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        return prop;
     }
 
     private static FilteringResult performOne(BidRequestFilter.Client client, BidRequest bidRequest) throws TException {
@@ -186,6 +417,10 @@ public class MultiThreadedClient {
             logger.info("filter bid request");
             logger.info("bid request " + bidRequest) ;
             Instant start = Instant.now();
+            if (deadlineMs > 0) {
+                // the dataset is shared by the client threads, the deadline goes on a copy
+                bidRequest = bidRequest.deepCopy().setDeadlineMs(start.toEpochMilli() + deadlineMs);
+            }
             BidResponse response = client.filter(bidRequest);
             filteringExecutionTime = Duration.between(start, Instant.now());
             likelihoodToBid = response.likelihoodToBid ;
@@ -256,118 +491,39 @@ public class MultiThreadedClient {
     }
 
 
-    static private ArrayList<BidRequest> loadData(String path) {
-
-        Object obj ;
-        logger.warn("start loading data in memory");
-        ArrayList<BidRequest> bidRequestList = new ArrayList<>();
-        int maxObject = 20000;
-        int nbObject = 0;
+    /**
+     * load the whole replay dataset, in parallel, with the device types set when aik.perfclient.classify.device is true.
+     * The run stops when the file cannot be read or holds no valid bid request, there would be nothing to send
+     * @param path the JSON lines file
+     * @return the bid requests, never empty
+     */
+    static private List<BidRequest> loadData(String path) {
+        DeviceTypeClassifier deviceTypeClassifier = null;
+        if (Boolean.parseBoolean(prop.getProperty("aik.perfclient.classify.device", "false"))) {
+            deviceTypeClassifier = new DeviceTypeClassifier(
+                    Integer.parseInt(prop.getProperty("aik.inference.device.cache.size", "65536")));
+        }
+        List<BidRequest> bidRequests = Collections.emptyList();
         try {
-            try (BufferedReader br = new BufferedReader(new FileReader(path))) { //creates a buffering character input stream
-                String line;
-                while ((line = br.readLine()) != null && nbObject <= maxObject) {
-                    obj = new JSONParser().parse(line);
-                    BidRequest bidRequest = new BidRequest();
-
-                    JSONObject rawObj = (JSONObject) obj;
-                    bidRequest.bidId = rawObj.get("BidID").toString();
-                    bidRequest.dayOfWeek = Integer.parseInt(rawObj.get("dow").toString());
-                    bidRequest.hour = rawObj.get("hour").toString();
-                    if (rawObj.get("AdvertiserID") == null) {
-                        bidRequest.advertiserId = "";
-                    } else {
-                        bidRequest.advertiserId = rawObj.get("AdvertiserID").toString();
-                    }
-                    bidRequest.domainId = rawObj.get("Domain").toString();
-                    bidRequest.regionId = rawObj.get("RegionID").toString();
-                    bidRequest.cityId = rawObj.get("CityID").toString();
-                    if (rawObj.get("BiddingPrice") == null) {
-                        bidRequest.biddingPrice = 0;
-                    } else {
-                        bidRequest.biddingPrice = Long.parseLong(rawObj.get("BiddingPrice").toString());
-                    }
-                    if (rawObj.get("PayingPrice") == null) {
-                        bidRequest.payingPrice = 0;
-                    } else {
-                        bidRequest.payingPrice = Long.parseLong(rawObj.get("PayingPrice").toString());
-                    }
-                    if (rawObj.get("UserAgent") == null) {
-                        bidRequest.deviceTypeId = 6;
-                    } else {
-                        bidRequest.deviceTypeId = MultiThreadedClient
-                                .getDeviceTypeId(rawObj.get("UserAgent").toString());
-                    }
-
-                    bidRequestList.add(bidRequest);
-                    nbObject = nbObject + 1;
-                }
-            }
-        } catch (IOException | ParseException e) {
-            e.printStackTrace();
+            bidRequests = new BidRequestLoader(deviceTypeClassifier).load(Paths.get(path));
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("unable to read the replay dataset " + path);
+            logger.catching(e);
+            System.exit(1);
         }
-        logger.warn("end loading data in memory " + bidRequestList.size());
-        return bidRequestList;
+        if (bidRequests.isEmpty()) {
+            logger.error("the replay dataset " + path + " holds no valid bid request");
+            System.exit(1);
+        }
+        return bidRequests;
     }
 
     /**
      * return a string value  from an SSM parameter
      * @param ssmParameterName the name of SSM parameter
-     * @return the value stored
+     * @return the value stored, or its environment or properties override
      */
     private static String getValueFromSsmParameter(String ssmParameterName) {
-        logger.traceEntry();
-        SsmClient ssmClient = SsmClient.builder()
-                .build();
-        String valueFromSsmParameter = "";
-        try {
-            logger.info("getting parameter for parameter name " + ssmParameterName);
-            GetParameterRequest parameterRequest = GetParameterRequest.builder()
-                    .name(ssmParameterName)
-                    .build();
-
-            GetParameterResponse parameterResponse = ssmClient.getParameter(parameterRequest);
-            valueFromSsmParameter = parameterResponse.parameter().value();
-            logger.info("successfully retrieved parameter " + valueFromSsmParameter);
-
-        } catch (SsmException e) {
-            logger.error("error while reading SSM parameter");
-            logger.catching(e);
-        } finally {
-            ssmClient.close();
-        }
-        return logger.traceExit(valueFromSsmParameter);
-    }
-
-    static public int getDeviceTypeId(String userAgent) {
-
-
-        Map<String, String> r = Classifier.parse(userAgent);
-        String category = r.get("category");
-        int deviceTypeId;
-        switch (category) {
-            case "smartphone":
-                deviceTypeId = 0;
-                break;
-            case "mobilephone":
-                deviceTypeId = 1;
-                break;
-            case "appliance":
-                deviceTypeId = 2;
-                break;
-            case "pc":
-                deviceTypeId = 3;
-                break;
-            case "crawler":
-                deviceTypeId = 4;
-                break;
-            case "misc":
-                deviceTypeId = 5;
-                break;
-            default:
-                deviceTypeId = randDeviceType.nextInt(maxDeviceType+1); ;
-                break;
-        }
-        return deviceTypeId;
+        return configuration.get(ssmParameterName);
     }
 }
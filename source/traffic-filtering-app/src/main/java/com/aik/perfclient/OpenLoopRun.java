@@ -0,0 +1,28 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.perfclient;
+
+import java.util.List;
+
+/**
+ * Outcome of an open-loop load test: the requests answered and the number of requests the client could not
+ * send on schedule. Late sends mean the client, not the server, limited the offered rate.
+ */
+public class OpenLoopRun {
+    private final List<FilteringResult> results;
+    private final long lateSends;
+
+    public OpenLoopRun(List<FilteringResult> results, long lateSends) {
+        this.results = results;
+        this.lateSends = lateSends;
+    }
+
+    public List<FilteringResult> getResults() {
+        return results;
+    }
+
+    public long getLateSends() {
+        return lateSends;
+    }
+}
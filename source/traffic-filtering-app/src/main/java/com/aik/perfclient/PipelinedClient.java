@@ -0,0 +1,387 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.perfclient;
+
+import com.aik.filterapi.BidRequest;
+import com.aik.filterapi.BidRequestFilter;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TByteArrayOutputStream;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TMemoryInputTransport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator keeping many filter calls in flight on every connection, all the connections driven by one
+ * event loop thread. The calls are encoded as framed binary thrift messages written back to back, and every
+ * response is matched to its call by the thrift sequence id. The selector server reads the next frame of
+ * a connection once the previous response is written, the pipeline removes the round trip between the calls
+ * and the connections give the concurrency, so a single thread generates the load of thousands of blocking clients.
+ * The responses of a connection must come back in the order of its calls, a connection receiving another one,
+ * closed by the server or leaving its oldest call unanswered for longer than the response timeout is dropped
+ * with its calls in flight counted as failed, and the run goes on with the others.
+ */
+public class PipelinedClient implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(PipelinedClient.class.getName());
+    private static final String FILTER_METHOD = "filter";
+    private static final int FRAME_HEADER_SIZE = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // the calls are counted late when sent more than this after their scheduled time
+    private static final long LATE_SEND_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    // waits shorter than this are spun, the selector timeout has a millisecond resolution
+    private static final long SPIN_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    private final Selector selector;
+    private final Connection[] connections;
+    private final int maxInFlight;
+    private final long deadlineMs;
+    private final long responseTimeoutNanos;
+    private final TByteArrayOutputStream encoded = new TByteArrayOutputStream(512);
+    private final TProtocol encoder;
+    private final TMemoryInputTransport decoded;
+    private final TProtocol decoder;
+    private final List<FilteringResult> results = new ArrayList<>();
+    private int failures;
+    private long lateSends;
+
+    /**
+     * open the connections, the server must run the selector engine since the calls are framed
+     * @param maxInFlight the maximum number of calls waiting for their response on a connection
+     * @param deadlineMs the deadline set on every call, in milliseconds after it is sent, 0 for no deadline
+     * @param responseTimeoutMs how long the oldest call of a connection waits for its response before the connection is dropped
+     */
+    public PipelinedClient(String host, int port, int nbConnections, int maxInFlight, long deadlineMs,
+                           long responseTimeoutMs) throws IOException, TException {
+        this.maxInFlight = maxInFlight;
+        this.deadlineMs = deadlineMs;
+        this.responseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(responseTimeoutMs);
+        this.encoder = new TBinaryProtocol(new TIOStreamTransport(encoded));
+        this.decoded = new TMemoryInputTransport();
+        this.decoder = new TBinaryProtocol(decoded);
+        this.selector = Selector.open();
+        this.connections = new Connection[nbConnections];
+        for (int i = 0; i < nbConnections; i++) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.configureBlocking(false);
+            connections[i] = new Connection(i, channel, channel.register(selector, SelectionKey.OP_READ), maxInFlight);
+            connections[i].key.attach(connections[i]);
+        }
+    }
+
+    /**
+     * send nbTest calls at the target rate, a call whose connections are all full waits for a response
+     * and its latency, measured from the time it was scheduled, includes that wait
+     * @param bidRequests the requests replayed
+     * @param targetQps the rate over all the connections, 0 to keep every connection at maxInFlight calls
+     * @return the latency and likelihood of every call answered, including the ones answered on a connection dropped later
+     */
+    public List<FilteringResult> run(List<BidRequest> bidRequests, int nbTest, double targetQps) throws IOException, TException {
+        results.clear();
+        failures = 0;
+        lateSends = 0;
+        Random random = new Random(nbTest);
+        long periodNanos = targetQps > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / targetQps) : 0;
+        long start = System.nanoTime();
+        int sent = 0;
+        int next = 0;
+        while (results.size() + failures < nbTest) {
+            if (openConnections() == 0) {
+                // every connection was dropped, the calls not sent yet fail too
+                failures += nbTest - sent;
+                break;
+            }
+            long now = System.nanoTime();
+            long wait = 0;
+            while (sent < nbTest) {
+                long scheduled = periodNanos > 0 ? start + sent * periodNanos : now;
+                wait = scheduled - now;
+                if (wait > 0) {
+                    break;
+                }
+                Connection connection = withRoom(next);
+                if (connection == null) {
+                    // every pipeline is full, the call is sent as soon as a response frees a slot
+                    wait = Long.MAX_VALUE;
+                    break;
+                }
+                if (now - scheduled > LATE_SEND_NANOS) {
+                    lateSends++;
+                }
+                connection.send(bidRequests.get(random.nextInt(bidRequests.size())), scheduled);
+                next = (connection.index + 1) % connections.length;
+                sent++;
+            }
+            for (Connection connection : connections) {
+                if (!connection.closed) {
+                    flush(connection);
+                }
+            }
+            // the wait for responses never goes past the response timeout of the oldest call in flight
+            long timeout = untilNextTimeout(now);
+            if (sent == nbTest || wait == Long.MAX_VALUE) {
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(timeout)));
+            } else if (wait >= SPIN_NANOS) {
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(Math.min(wait, timeout))));
+            } else {
+                selector.selectNow();
+                LockSupport.parkNanos(Math.min(wait, PARK_NANOS));
+            }
+            for (SelectionKey key : selector.selectedKeys()) {
+                Connection connection = (Connection) key.attachment();
+                try {
+                    if (key.isValid() && key.isReadable()) {
+                        connection.receive();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flush();
+                    }
+                } catch (IOException | TException e) {
+                    drop(connection, e);
+                }
+            }
+            selector.selectedKeys().clear();
+            dropTimedOut(System.nanoTime());
+        }
+        if (failures > 0) {
+            logger.warn(failures + " calls failed");
+        }
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * @return the number of calls of the last run sent late, behind full pipelines or a busy event loop
+     */
+    public long getLateSends() {
+        return lateSends;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Connection connection : connections) {
+            connection.channel.close();
+        }
+        selector.close();
+    }
+
+    private void flush(Connection connection) {
+        try {
+            connection.flush();
+        } catch (IOException e) {
+            drop(connection, e);
+        }
+    }
+
+    /**
+     * close a failed connection, its calls in flight will never be answered
+     */
+    private void drop(Connection connection, Exception cause) {
+        logger.error("connection " + connection.index + " dropped with " + connection.inFlight + " calls in flight: "
+                + cause.getMessage());
+        failures += connection.inFlight;
+        connection.inFlight = 0;
+        connection.closed = true;
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            logger.catching(e);
+        }
+    }
+
+    /**
+     * @return the time left before the oldest call in flight of a connection times out, at most the response timeout
+     */
+    private long untilNextTimeout(long now) {
+        long wait = responseTimeoutNanos;
+        for (Connection connection : connections) {
+            if (!connection.closed && connection.inFlight > 0) {
+                wait = Math.min(wait, connection.oldestSentAt() - now + responseTimeoutNanos);
+            }
+        }
+        return Math.max(0, wait);
+    }
+
+    /**
+     * drop the connections whose oldest call waited longer than the response timeout, a server which stopped
+     * answering would otherwise keep the run waiting forever
+     */
+    private void dropTimedOut(long now) {
+        for (Connection connection : connections) {
+            if (!connection.closed && connection.inFlight > 0
+                    && now - connection.oldestSentAt() > responseTimeoutNanos) {
+                drop(connection, new IOException("no response to call " + connection.expectedSequenceId + " within "
+                        + TimeUnit.NANOSECONDS.toMillis(responseTimeoutNanos) + " ms"));
+            }
+        }
+    }
+
+    private int openConnections() {
+        int open = 0;
+        for (Connection connection : connections) {
+            if (!connection.closed) {
+                open++;
+            }
+        }
+        return open;
+    }
+
+    private Connection withRoom(int first) {
+        for (int i = 0; i < connections.length; i++) {
+            Connection connection = connections[(first + i) % connections.length];
+            if (!connection.closed && connection.inFlight < maxInFlight) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final int index;
+        // scheduled and send time of the calls in flight, by sequence id modulo the pipeline depth
+        private final long[] scheduledAt;
+        private final long[] sentAt;
+        private ByteBuffer output = ByteBuffer.allocate(BUFFER_SIZE);
+        private ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+        private int nextSequenceId;
+        // sequence id of the oldest call in flight, the response expected next
+        private int expectedSequenceId;
+        private int inFlight;
+        private boolean closed;
+
+        private Connection(int index, SocketChannel channel, SelectionKey key, int maxInFlight) {
+            this.index = index;
+            this.channel = channel;
+            this.key = key;
+            this.scheduledAt = new long[maxInFlight];
+            this.sentAt = new long[maxInFlight];
+        }
+
+        /**
+         * append a framed call to the output buffer
+         */
+        private void send(BidRequest bidRequest, long scheduled) throws TException {
+            if (deadlineMs > 0) {
+                // the dataset is shared by the runs, the deadline goes on a copy
+                bidRequest = bidRequest.deepCopy().setDeadlineMs(System.currentTimeMillis() + deadlineMs);
+            }
+            int sequenceId = nextSequenceId;
+            nextSequenceId = (nextSequenceId + 1) & Integer.MAX_VALUE;
+            encoded.reset();
+            encoder.writeMessageBegin(new TMessage(FILTER_METHOD, TMessageType.CALL, sequenceId));
+            new BidRequestFilter.filter_args(bidRequest).write(encoder);
+            encoder.writeMessageEnd();
+            int length = encoded.len();
+            if (output.remaining() < FRAME_HEADER_SIZE + length) {
+                output = grow(output, FRAME_HEADER_SIZE + length);
+            }
+            output.putInt(length);
+            output.put(encoded.get(), 0, length);
+            scheduledAt[sequenceId % scheduledAt.length] = scheduled;
+            sentAt[sequenceId % sentAt.length] = System.nanoTime();
+            inFlight++;
+        }
+
+        /**
+         * @return the send time of the oldest call in flight, the response expected next
+         */
+        private long oldestSentAt() {
+            return sentAt[expectedSequenceId % sentAt.length];
+        }
+
+        /**
+         * write what the socket accepts, the rest is written when the socket becomes writable
+         */
+        private void flush() throws IOException {
+            if (output.position() == 0) {
+                return;
+            }
+            output.flip();
+            channel.write(output);
+            output.compact();
+            key.interestOps(output.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+
+        /**
+         * read the available bytes and decode every complete response frame
+         */
+        private void receive() throws IOException, TException {
+            if (channel.read(input) < 0) {
+                throw new IOException("connection " + index + " closed by the server with " + inFlight + " calls in flight");
+            }
+            long now = System.nanoTime();
+            input.flip();
+            while (input.remaining() >= FRAME_HEADER_SIZE) {
+                int length = input.getInt(input.position());
+                if (input.remaining() < FRAME_HEADER_SIZE + length) {
+                    break;
+                }
+                decoded.reset(input.array(), input.arrayOffset() + input.position() + FRAME_HEADER_SIZE, length);
+                decode(now);
+                input.position(input.position() + FRAME_HEADER_SIZE + length);
+            }
+            input.compact();
+            if (input.position() == input.capacity()) {
+                input = grow(input, input.capacity());
+            }
+        }
+
+        private void decode(long now) throws TException {
+            TMessage message = decoder.readMessageBegin();
+            if (message.seqid != expectedSequenceId) {
+                // the scheduled time of the call could not be told apart, the whole pipeline is lost
+                throw new TException("connection " + index + " received the response to call " + message.seqid
+                        + " while call " + expectedSequenceId + " is the oldest in flight");
+            }
+            expectedSequenceId = (expectedSequenceId + 1) & Integer.MAX_VALUE;
+            long scheduled = scheduledAt[message.seqid % scheduledAt.length];
+            inFlight--;
+            if (message.type == TMessageType.EXCEPTION) {
+                TApplicationException exception = TApplicationException.readFrom(decoder);
+                decoder.readMessageEnd();
+                logger.error("call " + message.seqid + " failed: " + exception.getMessage());
+                failures++;
+                return;
+            }
+            BidRequestFilter.filter_result result = new BidRequestFilter.filter_result();
+            result.read(decoder);
+            decoder.readMessageEnd();
+            if (!result.isSetSuccess()) {
+                failures++;
+                return;
+            }
+            results.add(new FilteringResult((now - scheduled) / 1e6, result.success.likelihoodToBid));
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int extra) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,123 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.perfclient;
+
+import com.aik.filterapi.BidRequest;
+import com.google.common.math.Quantiles;
+import com.timgroup.statsd.StatsDClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Capacity of the inference server: the highest open-loop rate whose p99 latency stays under a target.
+ * Every step offers a constant rate for a fixed duration and records the throughput and the latency percentiles,
+ * the rate is binary searched between a minimum and a maximum. A step is sustained when its p99 meets the target
+ * and the server answered at least 95% of the offered rate, a server falling behind its load does not pass.
+ * A step where the client itself could not keep the schedule, more than 1% of its requests sent late, measures
+ * the client and not the server: the sweep stops without a capacity and asks for more connections.
+ */
+public class SaturationSweep {
+
+    private static final Logger logger = LogManager.getLogger(SaturationSweep.class.getName());
+    private static final double MIN_THROUGHPUT_RATIO = 0.95;
+    private static final double MAX_LATE_SEND_RATIO = 0.01;
+
+    private final int nbThread;
+    private final List<BidRequest> bidRequests;
+    private final double p99TargetMs;
+    private final double stepDurationS;
+
+    /**
+     * @param nbThread the number of connections, enough to keep the maximum rate
+     * @param bidRequests the requests replayed
+     * @param p99TargetMs the latency objective
+     * @param stepDurationS how long every rate is offered
+     */
+    public SaturationSweep(int nbThread, List<BidRequest> bidRequests, double p99TargetMs, double stepDurationS) {
+        this.nbThread = nbThread;
+        this.bidRequests = bidRequests;
+        this.p99TargetMs = p99TargetMs;
+        this.stepDurationS = stepDurationS;
+    }
+
+    /**
+     * binary search the highest sustained rate
+     * @param minQps the lowest rate tried, returned as 0 when even this rate is not sustained
+     * @param maxQps the highest rate tried
+     * @param nbSteps the number of search steps after the minimum rate
+     * @return the highest sustained rate found, NaN when the client could not offer one of the rates tried
+     */
+    public double run(double minQps, double maxQps, int nbSteps) {
+        try {
+            return search(minQps, maxQps, nbSteps);
+        } catch (IllegalStateException e) {
+            logger.error("saturation sweep stopped, no capacity measured: " + e.getMessage());
+            return Double.NaN;
+        }
+    }
+
+    private double search(double minQps, double maxQps, int nbSteps) {
+        if (!step(minQps)) {
+            logger.warn("the p99 target of " + p99TargetMs + " ms is not met at the minimum rate of " + minQps + " qps");
+            return 0;
+        }
+        double sustained = minQps;
+        double low = minQps;
+        double high = maxQps;
+        for (int i = 0; i < nbSteps && high - low > 1; i++) {
+            double qps = Math.floor((low + high) / 2);
+            if (step(qps)) {
+                sustained = qps;
+                low = qps;
+            } else {
+                high = qps;
+            }
+        }
+        return sustained;
+    }
+
+    /**
+     * offer one rate for the step duration
+     * @return true when the rate is sustained under the p99 target
+     * @throws IllegalStateException when the client sent too many requests late to offer the rate
+     */
+    private boolean step(double qps) {
+        int nbTest = Math.max(nbThread, (int) (qps * stepDurationS));
+        long start = System.nanoTime();
+        OpenLoopRun run = MultiThreadedClient.runOpenLoop(nbThread, nbTest, bidRequests, qps);
+        double elapsedS = (System.nanoTime() - start) / 1e9;
+        if (run.getLateSends() > nbTest * MAX_LATE_SEND_RATIO) {
+            throw new IllegalStateException(String.format("at %.0f qps the client sent %d of %d requests late,"
+                    + " add connections or set aik.perfclient.pipeline.depth", qps, run.getLateSends(), nbTest));
+        }
+        List<FilteringResult> results = run.getResults();
+        if (results.isEmpty()) {
+            logger.warn("step at " + qps + " qps: no request answered");
+            return false;
+        }
+        double throughput = results.size() / elapsedS;
+        List<Double> latencies = results.stream().map(FilteringResult::getExecutionTime).collect(Collectors.toList());
+        Map<Integer, Double> percentiles = Quantiles.scale(1000).indexes(500, 990, 999).compute(latencies);
+        boolean sustained = percentiles.get(990) <= p99TargetMs && throughput >= qps * MIN_THROUGHPUT_RATIO;
+        logger.warn(String.format("step at %.0f qps: throughput %.0f qps p50 %.3f ms p99 %.3f ms p999 %.3f ms %s",
+                qps, throughput, percentiles.get(500), percentiles.get(990), percentiles.get(999),
+                sustained ? "sustained" : "saturated"));
+        return sustained;
+    }
+
+    /**
+     * log and publish the capacity, one number per build, nothing when the sweep did not measure it
+     */
+    public static void publish(double capacityQps, double p99TargetMs, StatsDClient statsd) {
+        if (Double.isNaN(capacityQps)) {
+            return;
+        }
+        logger.warn(String.format("capacity (qps) = %.0f at p99 <= %.3f ms", capacityQps, p99TargetMs));
+        statsd.recordGaugeValue("capacity_qps", capacityQps);
+    }
+}
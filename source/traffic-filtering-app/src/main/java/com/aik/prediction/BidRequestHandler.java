@@ -10,47 +10,94 @@ import com.timgroup.statsd.NonBlockingStatsDClient;
 import com.timgroup.statsd.StatsDClient;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import software.amazon.awssdk.services.ssm.SsmClient;
-import software.amazon.awssdk.services.ssm.model.GetParameterRequest;
-import software.amazon.awssdk.services.ssm.model.GetParameterResponse;
-import software.amazon.awssdk.services.ssm.model.SsmException;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.time.Duration;
-import java.time.Instant;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 
-public class BidRequestHandler implements BidRequestFilter.Iface {
+public class BidRequestHandler implements BidRequestFilter.Iface, AutoCloseable {
 
     private static final Logger logger = LogManager.getLogger(BidRequestHandler.class.getName());
     private static final StatsDClient statsd = new NonBlockingStatsDClient("filtering_server", "localhost", 8125);
-    private static final DoubleSummaryStatistics totalStats = new DoubleSummaryStatistics();
-    private final BiddingFilter filter;
+    private static final LatencyRecorder requestLatency = new LatencyRecorder("request");
+    private static final LatencyRecorder batchLatency = new LatencyRecorder("batch");
+    // stages of a filter call, from the thrift arguments decoding to the response encoding,
+    // histograms only: their percentiles are published with the others every metrics interval
+    private static final LatencyRecorder readLatency = new LatencyRecorder("read");
+    private static final LatencyRecorder deviceLatency = new LatencyRecorder("device");
+    private static final LatencyRecorder transformLatency = new LatencyRecorder("transform");
+    private static final LatencyRecorder filterLatency = new LatencyRecorder("filter");
+    private static final LatencyRecorder writeLatency = new LatencyRecorder("write");
+    private static final List<LatencyRecorder> recorders = Arrays.asList(requestLatency, batchLatency, readLatency,
+            deviceLatency, transformLatency, filterLatency, BiddingFilter.getScoringLatency(), writeLatency);
+    private static final int DEFAULT_DEVICE_CACHE_SIZE = 65536;
+    // requests answered without scoring because their deadline had passed
+    private static final LongAdder expiredRequests = new LongAdder();
+    // feature vector reused by every request served by a worker thread
+    private static final ThreadLocal<float[]> features = ThreadLocal.withInitial(() -> new float[FeatureEncoder.NB_FEATURES]);
+    // encoder and booster serving the requests, replaced as a whole when a new model version is published
+    private final AtomicReference<ModelBundle> model = new AtomicReference<>();
+    private String scoringEngine = BiddingFilter.XGBOOST_ENGINE;
+    private boolean streamArtifacts;
+    private int scoreCacheSize;
+    private double expiredLikelihood = 1;
+    private double shedLikelihood = 1;
+    private QueueDelayAdmission admission;
+    // the calls of the warm-up are served but not measured
+    private volatile boolean warmingUp;
+    private MicroBatcher batcher;
+    private ScheduledExecutorService metricsReporter;
+    private ScheduledExecutorService modelWatcher;
+    private LogSampler logSampler = new LogSampler(0);
+    private DeviceTypeClassifier deviceTypes = new DeviceTypeClassifier(DEFAULT_DEVICE_CACHE_SIZE);
+    private Configuration configuration;
     private String filteringModelSsmParameterName;
     private String transformationModelSsmParameterName;
     private String transformationModelSchemaSsmParameterName;
+    private String encoderArtifactSsmParameterName;
+    private final Supplier<ModelArtifacts> artifactResolver;
+    private final Function<ModelArtifacts, ModelBundle> bundleLoader;
 
 
     public BidRequestHandler() {
-        filter = new BiddingFilter();
+        this.artifactResolver = this::resolveArtifacts;
+        this.bundleLoader = this::loadModel;
+    }
+
+    /**
+     * handler reading the artifact versions and loading the bundles through the given functions instead of SSM
+     * and the artifact sources, init is not called
+     */
+    BidRequestHandler(Supplier<ModelArtifacts> artifactResolver, Function<ModelArtifacts, ModelBundle> bundleLoader) {
+        this.artifactResolver = artifactResolver;
+        this.bundleLoader = bundleLoader;
     }
 
     public void init() {
         logger.traceEntry();
         int metricsIntervalMs = 20000;
+        long reloadIntervalMs = 0;
+        Properties prop = new Properties();
 
         filteringModelSsmParameterName = "/aik/xgboost/path" ;
         transformationModelSsmParameterName = "/aik/pipelineModelArtifactPath" ;
         transformationModelSchemaSsmParameterName = "/aik/pipelineModelArtifactSchemaPath" ;
+        encoderArtifactSsmParameterName = "/aik/encoderArtifactPath" ;
 
         try (InputStream input = BidRequestHandler.class.getClassLoader().getResourceAsStream("config.properties")) {
 
-            Properties prop = new Properties();
             if (input == null) {
                 logger.error("Sorry, unable to find config.properties");
                 return;
@@ -60,118 +107,504 @@ public class BidRequestHandler implements BidRequestFilter.Iface {
             prop.load(input);
             //get the property value and print it out
             metricsIntervalMs = new Integer(prop.getProperty("aik.inference.server.metrics.interval.ms"));
+            reloadIntervalMs = Long.parseLong(prop.getProperty("aik.inference.model.reload.interval.ms", "0"));
 
 
         } catch (IOException ex) {
             ex.printStackTrace();
         }
 
+        logSampler = new LogSampler(Integer.parseInt(prop.getProperty("aik.inference.logging.sample.rate", "1000")));
+        deviceTypes = new DeviceTypeClassifier(Integer.parseInt(prop.getProperty("aik.inference.device.cache.size",
+                String.valueOf(DEFAULT_DEVICE_CACHE_SIZE))));
+        Downloader.setCacheDirectory(Paths.get(prop.getProperty("aik.inference.artifact.cache.dir", ".tmp/cache")));
+        configuration = new Configuration(prop, Long.parseLong(prop.getProperty("aik.inference.config.ttl.ms", "60000")));
+        streamArtifacts = Boolean.parseBoolean(prop.getProperty("aik.inference.artifact.streaming", "false"));
+        scoringEngine = prop.getProperty("aik.inference.scoring.engine", BiddingFilter.XGBOOST_ENGINE);
+        scoreCacheSize = Integer.parseInt(prop.getProperty("aik.inference.score.cache.size", "0"));
+        expiredLikelihood = Double.parseDouble(prop.getProperty("aik.inference.deadline.expired.likelihood", "1"));
+        shedLikelihood = Double.parseDouble(prop.getProperty("aik.inference.admission.shed.likelihood", "1"));
         this.loadConfig() ;
-        ScheduledExecutorService executorService = Executors
+        if (Boolean.parseBoolean(prop.getProperty("aik.inference.batching.enabled", "false"))) {
+            batcher = new MicroBatcher(
+                    Integer.parseInt(prop.getProperty("aik.inference.batching.max.size", "32")),
+                    Long.parseLong(prop.getProperty("aik.inference.batching.max.delay.us", "200")),
+                    Long.parseLong(prop.getProperty("aik.inference.batching.wait.timeout.us", "20000")),
+                    Integer.parseInt(prop.getProperty("aik.inference.batching.flush.threads", "1")));
+        }
+        metricsReporter = Executors
                 .newSingleThreadScheduledExecutor();
-        // schedule printing of the metrics
-        executorService.scheduleAtFixedRate(() -> logger.warn("current execution average (ms): " + totalStats.getAverage()), 0, metricsIntervalMs, TimeUnit.MILLISECONDS);
+        // schedule printing of the metrics, each report covers the latencies of the last interval only
+        metricsReporter.scheduleAtFixedRate(() -> {
+            recorders.forEach(this::reportLatency);
+            reportScoreCache();
+            reportExpiredRequests();
+            reportAdmission();
+        }, metricsIntervalMs, metricsIntervalMs, TimeUnit.MILLISECONDS);
+        if (reloadIntervalMs > 0) {
+            // watch for a new model version, loaded and validated on this thread, off the request path
+            modelWatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "model-watcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            modelWatcher.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalMs, reloadIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * stop the background tasks, the predictions still queued in the micro batcher are scored before it returns
+     */
+    @Override
+    public void close() {
+        if (modelWatcher != null) {
+            modelWatcher.shutdownNow();
+        }
+        if (metricsReporter != null) {
+            metricsReporter.shutdownNow();
+        }
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    /**
+     * @return the bundle serving the requests, its filter acquired for the call and released by the caller
+     */
+    private ModelBundle acquireModel() {
+        while (true) {
+            ModelBundle bundle = model.get();
+            if (bundle.getFilter().acquire()) {
+                return bundle;
+            }
+            // replaced and drained since it was read, the next read returns the bundle which replaced it
+        }
+    }
+
+    /**
+     * @return the model bundle currently serving the requests
+     */
+    public ModelBundle getModel() {
+        return model.get();
+    }
+
+    /**
+     * flag the next calls as warm-up: they are served as usual but send no StatsD metric and record no stage latency
+     */
+    public void startWarmUp() {
+        warmingUp = true;
+    }
+
+    /**
+     * end the warm-up, the latencies, the score cache and the counters it filled are dropped
+     * so the warm-up requests are not reported with the real traffic
+     */
+    public void endWarmUp() {
+        warmingUp = false;
+        recorders.forEach(LatencyRecorder::snapshot);
+        ScoreCache cache = model.get().getScoreCache();
+        if (cache != null) {
+            cache.clear();
+        }
+        expiredRequests.reset();
+    }
+
+    /**
+     * @return the latency of the thrift arguments decoding, recorded by the server protocol
+     */
+    public LatencyRecorder getReadLatency() {
+        return readLatency;
+    }
+
+    /**
+     * @return the latency of the thrift response encoding, recorded by the server protocol
+     */
+    public LatencyRecorder getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * @param admission decides which requests are scored from the time they waited for a worker thread,
+     *                  null to score every request
+     */
+    public void setAdmission(QueueDelayAdmission admission) {
+        this.admission = admission;
     }
 
+    private void reportLatency(LatencyRecorder recorder) {
+        LatencyHistogram.Snapshot snapshot = recorder.snapshot();
+        if (snapshot.getTotalCount() == 0) {
+            return;
+        }
+        long p50 = TimeUnit.NANOSECONDS.toMicros(snapshot.valueAtPercentile(50));
+        long p99 = TimeUnit.NANOSECONDS.toMicros(snapshot.valueAtPercentile(99));
+        long p999 = TimeUnit.NANOSECONDS.toMicros(snapshot.valueAtPercentile(99.9));
+        logger.warn("{} latency (us) count: {} p50: {} p99: {} p999: {} max: {}", recorder.getStage(),
+                snapshot.getTotalCount(), p50, p99, p999, TimeUnit.NANOSECONDS.toMicros(snapshot.getMaxValue()));
+        statsd.recordGaugeValue(recorder.getStage() + "_latency_p50", p50);
+        statsd.recordGaugeValue(recorder.getStage() + "_latency_p99", p99);
+        statsd.recordGaugeValue(recorder.getStage() + "_latency_p999", p999);
+    }
 
-    private void loadConfig() {
+    private void reportAdmission() {
+        QueueDelayAdmission current = admission;
+        if (current == null) {
+            return;
+        }
+        long shed = current.drainShed();
+        long admitted = current.drainAdmitted();
+        if (shed + admitted == 0) {
+            return;
+        }
+        double shedRate = (double) shed / (shed + admitted);
+        if (shed > 0) {
+            logger.warn("queue delay above target, shed: {} admitted: {} shed rate: {}", shed, admitted,
+                    String.format("%.3f", shedRate));
+        }
+        statsd.count("shed_count", shed);
+        statsd.recordGaugeValue("shed_rate", shedRate);
+    }
+
+    private void reportExpiredRequests() {
+        long expired = expiredRequests.sumThenReset();
+        if (expired > 0) {
+            logger.warn("{} bid requests expired before being scored", expired);
+        }
+    }
+
+    private void reportScoreCache() {
+        ScoreCache cache = model.get().getScoreCache();
+        if (cache == null) {
+            return;
+        }
+        long hits = cache.drainHits();
+        long misses = cache.drainMisses();
+        if (hits + misses == 0) {
+            return;
+        }
+        double hitRate = (double) hits / (hits + misses);
+        logger.warn("score cache hits: {} misses: {} hit rate: {}", hits, misses, String.format("%.3f", hitRate));
+        statsd.count("score_cache_hit_count", hits);
+        statsd.count("score_cache_miss_count", misses);
+        statsd.recordGaugeValue("score_cache_hit_rate", hitRate);
+    }
+
+    /**
+     * every bundle gets its own cache, the likelihoods of the previous model are dropped with it on reload
+     */
+    private ScoreCache newScoreCache() {
+        return scoreCacheSize > 0 ? new ScoreCache(scoreCacheSize) : null;
+    }
+
+
+    void loadConfig() {
         //load inference model using XGB library
         logger.info("Getting URI of the filtering model");
+        ModelArtifacts artifacts = artifactResolver.get();
+        ModelBundle bundle = bundleLoader.apply(artifacts);
+        // checked like the reloaded bundles, the server does not start with a bundle which cannot score
+        bundle.validate();
+        model.set(bundle);
+        pruneCache(artifacts);
+        logger.warn("serving " + artifacts);
+    }
+
+    /**
+     * drop the cached copies of the artifact versions no longer served
+     */
+    private static void pruneCache(ModelArtifacts artifacts) {
+        Downloader.prune(artifacts.getFilteringModelUri(), artifacts.getFilteringModelVersion());
+        if (artifacts.hasEncoderArtifact()) {
+            Downloader.prune(artifacts.getEncoderArtifactUri(), artifacts.getEncoderArtifactVersion());
+        } else {
+            Downloader.prune(artifacts.getTransformationModelUri(), artifacts.getTransformationModelVersion());
+            Downloader.prune(artifacts.getTransformationModelSchemaUri(), artifacts.getTransformationModelSchemaVersion());
+        }
+    }
+
+    /**
+     * publish a new model bundle when the SSM parameters or the artifacts they point to have changed.
+     * A bundle failing to load or to validate is discarded and the current one keeps serving.
+     * The replaced bundle frees its booster once the requests still using it complete
+     */
+    void reloadIfChanged() {
+        try {
+            ModelArtifacts artifacts = artifactResolver.get();
+            if (artifacts.equals(model.get().getArtifacts())) {
+                return;
+            }
+            logger.warn("new model version found, loading " + artifacts);
+            ModelBundle bundle = bundleLoader.apply(artifacts);
+            bundle.validate();
+            model.getAndSet(bundle).retire();
+            pruneCache(artifacts);
+            statsd.incrementCounter("model_reload_count");
+            logger.warn("serving " + artifacts);
+        } catch (Exception e) {
+            statsd.incrementCounter("model_reload_failure_count");
+            logger.error("model reload failed, still serving " + model.get().getArtifacts(), e);
+        }
+    }
+
+    /**
+     * read the artifact locations from SSM and the current version of each artifact
+     */
+    private ModelArtifacts resolveArtifacts() {
         String filteringModelUri = getValueFromSsmParameter(filteringModelSsmParameterName) ;
         String transformationModelUri = getValueFromSsmParameter(transformationModelSsmParameterName) ;
         String transformationModelSchemaUri = getValueFromSsmParameter(transformationModelSchemaSsmParameterName) ;
-        logger.info("Downloading bidding filter model "+ filteringModelUri);
-        loadModel(transformationModelUri,transformationModelSchemaUri,filteringModelUri);
-        logger.info("Loading in memory transformer model");
+        String encoderArtifactUri = getValueFromSsmParameter(encoderArtifactSsmParameterName) ;
+        if (!encoderArtifactUri.isEmpty()) {
+            // the MLeap pipeline is replaced by its precompiled encoder, its artifacts are not read
+            return new ModelArtifacts(transformationModelUri, "", transformationModelSchemaUri, "",
+                    filteringModelUri, Downloader.getVersion(filteringModelUri),
+                    encoderArtifactUri, Downloader.getVersion(encoderArtifactUri));
+        }
+        return new ModelArtifacts(
+                transformationModelUri, Downloader.getVersion(transformationModelUri),
+                transformationModelSchemaUri, Downloader.getVersion(transformationModelSchemaUri),
+                filteringModelUri, Downloader.getVersion(filteringModelUri));
     }
 
 
-    private void loadModel(String s3URITransformationModel,
-                           String s3URITransformationModelSchema,
-                           String s3URIFilteringModel ) {
+    private ModelBundle loadModel(ModelArtifacts artifacts) {
+        if (artifacts.hasEncoderArtifact()) {
+            return loadEncoderArtifact(artifacts);
+        }
+        if (streamArtifacts) {
+            return streamModel(artifacts);
+        }
 
-        logger.info("Downloading transformations model for feature processing from " + s3URITransformationModel);
-        String modelLocation = Downloader.getTransformerModel(s3URITransformationModel);
-        logger.info("Downloading schema for feature processing");
-        String schemaLocation = Downloader.getTransformerSchema(s3URITransformationModelSchema);
+        // the three artifacts are fetched concurrently, an unchanged version is served from the local cache
+        logger.info("Downloading transformations model, schema and bidding filter model");
+        CompletableFuture<String> modelLocation = Downloader.fetchAsync(artifacts.getTransformationModelUri(),
+                artifacts.getTransformationModelVersion(), ".zip");
+        CompletableFuture<String> schemaLocation = Downloader.fetchAsync(artifacts.getTransformationModelSchemaUri(),
+                artifacts.getTransformationModelSchemaVersion(), ".json");
+        CompletableFuture<String> modelBiddingFilterLocation = Downloader.fetchAsync(artifacts.getFilteringModelUri(),
+                artifacts.getFilteringModelVersion(), ".bin");
 
-        // load model for feature transformation
+        // load model and schema for feature transformation
         logger.info("Loading in memory transformer model");
-        Transform$.MODULE$.loadModel(modelLocation);
-        logger.info("Loading in memory schema model");
-        Transform$.MODULE$.loadSchema(schemaLocation);
+        Transform transform = Transform$.MODULE$.load(modelLocation.join(), schemaLocation.join());
 
         //load inference model using XGB library
-        logger.info("Downloading bidding filter model");
-        String modelBiddingFilterLocation = Downloader.getFilteringModel(s3URIFilteringModel);
-        logger.info("Loading in memory transformer model");
+        logger.info("Loading in memory filtering model");
+        BiddingFilter filter = new BiddingFilter();
+        filter.setScoringEngine(scoringEngine);
+        filter.loadModel(modelBiddingFilterLocation.join());
+        return new ModelBundle(artifacts, transform, filter, newScoreCache());
+    }
 
-        filter.loadModel(modelBiddingFilterLocation);
+    /**
+     * map the precompiled encoder, MLeap is never loaded in this mode
+     */
+    private ModelBundle loadEncoderArtifact(ModelArtifacts artifacts) {
+        logger.info("Downloading encoder artifact and bidding filter model");
+        CompletableFuture<String> encoderLocation = Downloader.fetchAsync(artifacts.getEncoderArtifactUri(),
+                artifacts.getEncoderArtifactVersion(), ".bin");
+        CompletableFuture<String> modelBiddingFilterLocation = Downloader.fetchAsync(artifacts.getFilteringModelUri(),
+                artifacts.getFilteringModelVersion(), ".bin");
+
+        FeatureEncoder encoder;
+        try {
+            encoder = EncoderArtifact.load(Paths.get(encoderLocation.join()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to load encoder artifact " + artifacts.getEncoderArtifactUri(), e);
+        }
+        BiddingFilter filter = new BiddingFilter();
+        filter.setScoringEngine(scoringEngine);
+        filter.loadModel(modelBiddingFilterLocation.join());
+        return new ModelBundle(artifacts, encoder, filter, newScoreCache());
+    }
+
+    /**
+     * load the schema and the filtering model straight from their source into memory,
+     * only the MLeap bundle goes through the local cache since MLeap reads bundles from a filesystem
+     */
+    private ModelBundle streamModel(ModelArtifacts artifacts) {
+        logger.info("Streaming transformations model, schema and bidding filter model");
+        CompletableFuture<String> modelLocation = Downloader.fetchAsync(artifacts.getTransformationModelUri(),
+                artifacts.getTransformationModelVersion(), ".zip");
+        CompletableFuture<byte[]> schema = Downloader.readAsync(artifacts.getTransformationModelSchemaUri());
+        CompletableFuture<byte[]> filteringModel = Downloader.readAsync(artifacts.getFilteringModelUri());
+
+        Transform transform = Transform$.MODULE$.load(modelLocation.join(), schema.join());
+        BiddingFilter filter = new BiddingFilter();
+        filter.setScoringEngine(scoringEngine);
+        filter.loadModel(new ByteArrayInputStream(filteringModel.join()), artifacts.getFilteringModelUri());
+        return new ModelBundle(artifacts, transform, filter, newScoreCache());
     }
 
 
     /**
      * return a string value  from an SSM parameter
      * @param ssmParameterName the name of SSM parameter
-     * @return the value stored
+     * @return the value stored, from the cached batch of /aik parameters or its local overrides
      */
     private String getValueFromSsmParameter(String ssmParameterName) {
-        logger.traceEntry();
-        SsmClient ssmClient = SsmClient.builder()
-                .build();
-        String valueFromSsmParameter = "";
-        try {
-            logger.info("getting parameter for parameter name " + ssmParameterName);
-            GetParameterRequest parameterRequest = GetParameterRequest.builder()
-                    .name(ssmParameterName)
-                    .build();
+        String valueFromSsmParameter = configuration.get(ssmParameterName);
+        logger.info("parameter " + ssmParameterName + " resolved to " + valueFromSsmParameter);
+        return valueFromSsmParameter;
+    }
 
-            GetParameterResponse parameterResponse = ssmClient.getParameter(parameterRequest);
-            valueFromSsmParameter = parameterResponse.parameter().value();
-            logger.info("successfully retrieved parameter " + valueFromSsmParameter);
 
-        } catch (SsmException e) {
-            logger.error("error while reading SSM parameter");
-            logger.catching(e);
-        } finally {
-            ssmClient.close();
+
+
+
+    /**
+     * derive the device type from the user agent when the caller did not send it
+     */
+    private void resolveDeviceType(BidRequest request) {
+        if (!request.isSetDeviceTypeId()) {
+            request.setDeviceTypeId(deviceTypes.deviceTypeId(request.userAgent));
         }
-        return logger.traceExit(valueFromSsmParameter);
     }
 
+    /**
+     * @return true when the caller will no longer use the response, it is not worth scoring the request
+     */
+    private static boolean expired(BidRequest request, long nowMs) {
+        return request.isSetDeadlineMs() && nowMs >= request.deadlineMs;
+    }
 
+    private void skipExpired(BidResponse response) {
+        response.likelihoodToBid = expiredLikelihood;
+        expiredRequests.increment();
+        if (!warmingUp) {
+            statsd.incrementCounter("deadline_expired_count");
+        }
+    }
 
-
+    /**
+     * record the latency of a stage of a filter call, nothing during the warm-up
+     */
+    private void recordStage(LatencyRecorder recorder, long nanos) {
+        if (!warmingUp) {
+            recorder.record(nanos);
+        }
+    }
 
     public BidResponse filter(BidRequest request) throws org.apache.thrift.TException {
-        logger.info("starting filtering a bid request");
-
-        Instant start = Instant.now();
+        long start = System.nanoTime();
         BidResponse response = new BidResponse();
+        // the request waited too long in the queues, answer at once rather than adding load
+        if (expired(request, System.currentTimeMillis())) {
+            skipExpired(response);
+            return response;
+        }
+        // the worker queue is standing, answer the requests which waited too long with the default likelihood
+        if (admission != null && !admission.admit()) {
+            response.likelihoodToBid = shedLikelihood;
+            return response;
+        }
 
+        // read once, the request is transformed and scored by the same bundle even during a reload
+        ModelBundle bundle = acquireModel();
+        BiddingFilter filter = bundle.getFilter();
         try {
-            List<Double> transformedFeature = Transform$.MODULE$.transform(request);
-            logger.info("nb featured : " + transformedFeature.size());
-
-            // Compute likelihood to bid for each TP
-            double likelihood = filter.filter(transformedFeature);
-            logger.trace("advertiser ID " + request.advertiserId + " likelihood to bid " + likelihood);
+            float[] transformedFeature = features.get();
+            // each stage is timed on its own, the checks above are only part of the request latency
+            long resolveStart = System.nanoTime();
+            resolveDeviceType(request);
+            long transformStart = System.nanoTime();
+            recordStage(deviceLatency, transformStart - resolveStart);
+            bundle.getTransform().transformInto(request, transformedFeature);
+            long transformed = System.nanoTime();
+            recordStage(transformLatency, transformed - transformStart);
+
+            // the hot feature vectors are served from the cache of the bundle, without prediction
+            ScoreCache cache = bundle.getScoreCache();
+            long key = cache != null ? ScoreCache.key(transformedFeature) : ScoreCache.NOT_CACHEABLE;
+            double likelihood = key != ScoreCache.NOT_CACHEABLE ? cache.get(key) : Double.NaN;
+            if (Double.isNaN(likelihood)) {
+                // Compute likelihood to bid for each TP, merged with the concurrent requests when batching is enabled
+                likelihood = batcher != null ? batcher.filter(filter, transformedFeature) : filter.filter(transformedFeature);
+                if (key != ScoreCache.NOT_CACHEABLE) {
+                    cache.put(key, likelihood);
+                }
+            }
+            recordStage(filterLatency, System.nanoTime() - transformed);
+            if (logger.isDebugEnabled() && logSampler.sample()) {
+                logger.debug("bid {} advertiser ID {} features {} likelihood to bid {}", request.bidId,
+                        request.advertiserId, Arrays.toString(transformedFeature), likelihood);
+            }
 
             response.likelihoodToBid = likelihood;
-            Instant stop = Instant.now();
 
-            Duration totalDuration = Duration.between(start, stop);
-            double totalExecutionTime = totalDuration.getNano() / 1000000.d;
-            //logger.warn("par Thread " + Thread.currentThread().getId() + "execution time " +  totalExecutionTime + " micro " +  totalDuration.getNano()/1000 );
-            totalStats.accept(totalExecutionTime);
-            statsd.incrementCounter("filtering_count");
-            statsd.recordExecutionTime("filtering_latency", totalDuration.getNano() / 1000);
+            long totalDuration = System.nanoTime() - start;
+            recordStage(requestLatency, totalDuration);
+            if (!warmingUp) {
+                statsd.incrementCounter("filtering_count");
+                statsd.recordExecutionTime("filtering_latency", TimeUnit.NANOSECONDS.toMicros(totalDuration));
+            }
         }
         catch (Exception e ){
-            logger.warn("An exception was caught " + e) ;
-            e.printStackTrace();
+            logger.warn("An exception was caught while filtering bid {}", request.bidId, e);
+        }
+        finally {
+            filter.release();
         }
         return response;
     }
+
+    public List<BidResponse> filterBatch(List<BidRequest> requests) throws org.apache.thrift.TException {
+        if (logger.isDebugEnabled() && logSampler.sample()) {
+            logger.debug("starting filtering a batch of {} bid requests", requests.size());
+        }
+
+        long start = System.nanoTime();
+        List<BidResponse> responses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            responses.add(new BidResponse());
+        }
+        if (admission != null && !admission.admit()) {
+            for (BidResponse response : responses) {
+                response.likelihoodToBid = shedLikelihood;
+            }
+            return responses;
+        }
+        // only the requests whose deadline has not passed are scored
+        long nowMs = System.currentTimeMillis();
+        List<BidRequest> live = new ArrayList<>(requests.size());
+        List<BidResponse> liveResponses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            if (expired(requests.get(i), nowMs)) {
+                skipExpired(responses.get(i));
+            } else {
+                live.add(requests.get(i));
+                liveResponses.add(responses.get(i));
+            }
+        }
+        if (live.isEmpty()) {
+            return responses;
+        }
+
+        ModelBundle bundle = acquireModel();
+        try {
+            // one feature matrix and one DMatrix for the whole batch
+            float[] transformedFeatures = new float[live.size() * FeatureEncoder.NB_FEATURES];
+            for (BidRequest request : live) {
+                resolveDeviceType(request);
+            }
+            bundle.getTransform().transformBatchInto(live, transformedFeatures);
+            double[] likelihoods = bundle.getFilter().filterBatch(transformedFeatures, live.size(), FeatureEncoder.NB_FEATURES);
+            for (int i = 0; i < likelihoods.length; i++) {
+                liveResponses.get(i).likelihoodToBid = likelihoods[i];
+            }
+
+            long totalDuration = System.nanoTime() - start;
+            batchLatency.record(totalDuration);
+            statsd.count("filtering_count", live.size());
+            statsd.recordExecutionTime("filtering_batch_latency", TimeUnit.NANOSECONDS.toMicros(totalDuration));
+        }
+        catch (Exception e ){
+            logger.warn("An exception was caught while filtering a batch of {} bid requests", requests.size(), e);
+        }
+        finally {
+            bundle.getFilter().release();
+        }
+        return responses;
+    }
 }
 
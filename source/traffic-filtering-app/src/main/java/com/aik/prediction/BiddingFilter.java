@@ -10,23 +10,110 @@ import ml.dmlc.xgboost4j.java.XGBoostError;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.time.Duration;
-import java.time.Instant;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class BiddingFilter {
     private static final Logger logger = LogManager.getLogger(BiddingFilter.class.getName());
-    private static Booster booster;
+    /**
+     * scoring through the xgboost4j native booster
+     */
+    public static final String XGBOOST_ENGINE = "xgboost";
+    /**
+     * scoring through the pure Java evaluation of the same trees
+     */
+    public static final String JAVA_ENGINE = "java";
+    private Booster booster;
+    private TreeEnsemble ensemble;
+    private String scoringEngine = XGBOOST_ENGINE;
+    // one reference held while the filter is published, one per call in flight, the booster is freed at zero
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final AtomicBoolean retired = new AtomicBoolean();
 
-    final private static DoubleSummaryStatistics mainStats = new DoubleSummaryStatistics();
+    // shared by the filters of the successive model bundles
+    private static final LatencyRecorder scoringLatency = new LatencyRecorder("scoring");
 
 
+    public BiddingFilter() {
+    }
+
+    /**
+     * filter scoring with an already built ensemble
+     */
+    BiddingFilter(TreeEnsemble ensemble) {
+        this.scoringEngine = JAVA_ENGINE;
+        this.ensemble = ensemble;
+    }
+
+    /**
+     * select the engine computing the predictions, must be called before loading the model
+     * @param scoringEngine xgboost or java
+     */
+    public void setScoringEngine(String scoringEngine) {
+        this.scoringEngine = scoringEngine;
+    }
+
+    /**
+     * @return the latency of the predictions, a batch is recorded once
+     */
+    public static LatencyRecorder getScoringLatency() {
+        return scoringLatency;
+    }
+
+    /**
+     * take a reference for a call, the native booster is not freed before it is released
+     * @return false when the filter was retired and every call released it, it can no longer score
+     */
+    public boolean acquire() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    /**
+     * release a reference taken by acquire
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            dispose();
+        }
+    }
+
+    /**
+     * drop the reference of the published filter once a new model replaces it,
+     * the booster is freed when the last call in flight releases it
+     */
+    public void retire() {
+        if (retired.compareAndSet(false, true)) {
+            release();
+        }
+    }
+
+    private void dispose() {
+        if (booster != null) {
+            booster.dispose();
+            booster = null;
+        }
+        logger.info("filtering model disposed");
+    }
+
     public void loadModel(String modelLocation) {
         logger.info("load model in memory");
         long startTime = System.currentTimeMillis();
         try {
-            BiddingFilter.booster = XGBoost.loadModel(modelLocation);
+            booster = XGBoost.loadModel(modelLocation);
+            if (JAVA_ENGINE.equals(scoringEngine)) {
+                ensemble = TreeEnsemble.fromBooster(booster);
+            }
         } catch (XGBoostError e) {
             logger.error("model location : ["+modelLocation+"]");
             logger.error("error while loading filtering model " + modelLocation);
@@ -36,36 +123,103 @@ public class BiddingFilter {
         logger.info("--- load model in: " + endTime + "ms");
     }
 
-    public Double filter( List<Double> bidRequest) {
-        Instant mainStart = Instant.now() ;
-        double likelihoodToBid = -1 ;
-            float[] testInput = new float[bidRequest.size()];
-            float[][] predicts ;
-            for (int i = 0, total = bidRequest.size(); i < total; i++) {
-                testInput[i] = bidRequest.get(i).floatValue();
+    /**
+     * load the model from a stream, without writing it to a local file first
+     * @param model the content of the model
+     * @param modelLocation where the model comes from, for the logs
+     */
+    public void loadModel(InputStream model, String modelLocation) {
+        logger.info("load model in memory from stream");
+        long startTime = System.currentTimeMillis();
+        try {
+            booster = XGBoost.loadModel(model);
+            if (JAVA_ENGINE.equals(scoringEngine)) {
+                ensemble = TreeEnsemble.fromBooster(booster);
             }
-            logger.info("filtering input " + Arrays.toString(testInput)) ;
-            try {
-                //One row, X columns
-                DMatrix testMatOneRow = new DMatrix(testInput, 1, testInput.length, Float.NaN);
-                predicts = BiddingFilter.booster.predict(testMatOneRow);
+        } catch (XGBoostError | IOException e) {
+            logger.error("error while loading filtering model " + modelLocation);
+            logger.catching(e);
+        }
+        long endTime = System.currentTimeMillis() - startTime;
+        logger.info("--- load model in: " + endTime + "ms");
+    }
 
-                if (predicts.length > 0) {
-                    if (predicts[0].length > 0) {
-                        likelihoodToBid = predicts[0][0];
-                    }
-                }
-            } catch (XGBoostError e) {
-                logger.catching(e);
+    /**
+     * compute the likelihood to bid of one bid request, the java engine does not allocate.
+     * The request is not logged here, the handler logs a sample of the features with their likelihood
+     * @param features the feature vector of the bid request
+     * @return the likelihood to bid, -1 when the prediction failed
+     */
+    public double filter(float[] features) {
+        long mainStart = System.nanoTime();
+        double likelihoodToBid;
+        if (ensemble != null) {
+            likelihoodToBid = ensemble.predict(features);
+        } else {
+            //One row, X columns
+            double[] predicts = {-1};
+            predictWithBooster(features, 1, features.length, predicts);
+            likelihoodToBid = predicts[0];
+        }
+        scoringLatency.recordSince(mainStart);
+        return likelihoodToBid;
+    }
+
+    /**
+     * compute the likelihood to bid of a burst of bid requests with a single multi-row prediction
+     * @param features the feature vectors of the bid requests, row-major nbRows x nbColumns
+     * @param nbRows the number of bid requests
+     * @param nbColumns the number of features of a bid request
+     * @return the likelihood to bid of every bid request, in the same order, -1 when the prediction failed
+     */
+    public double[] filterBatch(float[] features, int nbRows, int nbColumns) {
+        long mainStart = System.nanoTime();
+        double[] likelihoodToBid = new double[nbRows];
+        Arrays.fill(likelihoodToBid, -1);
+        if (nbRows == 0) {
+            return likelihoodToBid;
+        }
+        if (ensemble != null) {
+            float[] row = new float[nbColumns];
+            for (int i = 0; i < nbRows; i++) {
+                System.arraycopy(features, i * nbColumns, row, 0, nbColumns);
+                likelihoodToBid[i] = ensemble.predict(row);
             }
+        } else {
+            //X rows, Y columns
+            predictWithBooster(features, nbRows, nbColumns, likelihoodToBid);
+        }
 
-        logger.info("likelihood to bid " + likelihoodToBid) ;
-        Instant mainStop = Instant.now() ;
-        Duration mainDuration = Duration.between(mainStart,mainStop) ;
-        double mainTime = mainDuration.getNano()/1000000.d;
-        mainStats.accept(mainTime);
+        if (logger.isTraceEnabled()) {
+            logger.trace("batch of {} bid requests filtered", nbRows);
+        }
+        scoringLatency.recordSince(mainStart);
         return likelihoodToBid;
     }
 
+    /**
+     * score a row-major matrix with the native booster
+     * @param input the feature values, nbRows x nbColumns
+     * @param likelihoodToBid receives the prediction of every row, left untouched when the prediction failed
+     */
+    private void predictWithBooster(float[] input, int nbRows, int nbColumns, double[] likelihoodToBid) {
+        try {
+            DMatrix testMat = new DMatrix(input, nbRows, nbColumns, Float.NaN);
+            try {
+                float[][] predicts = booster.predict(testMat);
+                for (int row = 0; row < predicts.length && row < nbRows; row++) {
+                    if (predicts[row].length > 0) {
+                        likelihoodToBid[row] = predicts[row][0];
+                    }
+                }
+            } finally {
+                // free the native matrix now rather than on finalization
+                testMat.dispose();
+            }
+        } catch (XGBoostError e) {
+            logger.catching(e);
+        }
+    }
+
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+/**
+ * Lookup table compiled from the labels of a StringIndexer stage,
+ * returns the same index as the MLeap transformer without touching any Scala collection.
+ */
+public abstract class CategoryIndex {
+
+    private final int size;
+    private final float invalidIndex;
+
+    protected CategoryIndex(int size, boolean keepInvalid) {
+        this.size = size;
+        // handleInvalid=keep puts every unseen label in an extra bucket after the known labels,
+        // error and skip have no bucket: MLeap rejects the request and the encoder does the same on NaN
+        this.invalidIndex = keepInvalid ? size : Float.NaN;
+    }
+
+    /**
+     * build the most compact table for the labels, keyed by primitive longs
+     * when every label is the canonical string of a number
+     * @param labels the labels of the StringIndexer, the index of a label is its position
+     * @param keepInvalid true when the StringIndexer was fitted with handleInvalid=keep
+     */
+    public static CategoryIndex of(String[] labels, boolean keepInvalid) {
+        for (String label : labels) {
+            if (!LongCategoryIndex.isCanonicalLong(label)) {
+                return new StringCategoryIndex(labels, keepInvalid);
+            }
+        }
+        return new LongCategoryIndex(labels, keepInvalid);
+    }
+
+    /**
+     * @param label the raw value of the bid request, may be null
+     * @return the index of the label, the invalid bucket or NaN when the label is unknown
+     */
+    public float indexOf(String label) {
+        if (label == null) {
+            return invalidIndex;
+        }
+        int index = lookup(label);
+        return index < 0 ? invalidIndex : index;
+    }
+
+    /**
+     * @return the number of known labels
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the index of a label or -1 when it is unknown
+     */
+    protected abstract int lookup(String label);
+
+    /**
+     * @return the known labels in index order, rebuilt from the table
+     */
+    public abstract String[] labels();
+
+    /**
+     * @return true when the unseen labels go to an extra bucket rather than NaN
+     */
+    public boolean keepInvalid() {
+        return !Float.isNaN(invalidIndex);
+    }
+
+    /**
+     * @return a power of two table size keeping the load factor under 0.5
+     */
+    static int tableSize(int nbLabels) {
+        int capacity = 2;
+        while (capacity < nbLabels * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    static int mix(long hash) {
+        long mixed = hash * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
@@ -0,0 +1,133 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.ssm.SsmClient;
+import software.amazon.awssdk.services.ssm.model.GetParametersByPathRequest;
+import software.amazon.awssdk.services.ssm.model.Parameter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Values of the /aik SSM parameters, all resolved by one paginated GetParametersByPath call through a single client
+ * and cached for a time to live, so the reload checks do not hit SSM on every poll.
+ * A parameter is looked up, in order, in:
+ * <ul>
+ *     <li>the environment, /aik/xgboost/path is overridden by AIK_XGBOOST_PATH</li>
+ *     <li>SSM</li>
+ *     <li>the local properties, /aik/xgboost/path falls back to aik.xgboost.path</li>
+ * </ul>
+ */
+public class Configuration {
+
+    private static final Logger logger = LogManager.getLogger(Configuration.class.getName());
+    public static final String PARAMETER_PATH = "/aik";
+
+    private final Properties properties;
+    private final Map<String, String> environment;
+    private final long ttlNanos;
+    private volatile SsmClient ssmClient;
+    private volatile Map<String, String> parameters = Collections.emptyMap();
+    private volatile long resolvedAt;
+    private volatile boolean resolved;
+
+    /**
+     * @param properties the local fallback values
+     * @param ttlMs how long the SSM values are reused before being resolved again
+     */
+    public Configuration(Properties properties, long ttlMs) {
+        this(properties, System.getenv(), ttlMs);
+    }
+
+    Configuration(Properties properties, Map<String, String> environment, long ttlMs) {
+        this(properties, environment, null, ttlMs);
+    }
+
+    /**
+     * @param ssmClient the client reading the SSM parameters, null to build the default one on first use
+     */
+    Configuration(Properties properties, Map<String, String> environment, SsmClient ssmClient, long ttlMs) {
+        this.properties = properties;
+        this.environment = environment;
+        this.ssmClient = ssmClient;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    /**
+     * @param parameterName the name of the SSM parameter, /aik/xgboost/path for example
+     * @return the value of the parameter, empty when it is not set anywhere
+     */
+    public String get(String parameterName) {
+        String override = environment.get(environmentName(parameterName));
+        if (override != null) {
+            return override;
+        }
+        String value = ssmParameters().get(parameterName);
+        if (value != null) {
+            return value;
+        }
+        return properties.getProperty(propertyName(parameterName), "");
+    }
+
+    private Map<String, String> ssmParameters() {
+        if (!resolved || System.nanoTime() - resolvedAt > ttlNanos) {
+            synchronized (this) {
+                if (!resolved || System.nanoTime() - resolvedAt > ttlNanos) {
+                    resolve();
+                }
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * read every parameter under /aik, the previous values are kept when SSM can not be reached
+     */
+    private void resolve() {
+        try {
+            Map<String, String> values = new HashMap<>();
+            GetParametersByPathRequest request = GetParametersByPathRequest.builder()
+                    .path(PARAMETER_PATH)
+                    .recursive(true)
+                    .build();
+            for (Parameter parameter : ssmClient().getParametersByPathPaginator(request).parameters()) {
+                values.put(parameter.name(), parameter.value());
+            }
+            parameters = values;
+            logger.info("resolved " + values.size() + " SSM parameters under " + PARAMETER_PATH);
+        } catch (SdkException e) {
+            logger.error("error while reading the SSM parameters under " + PARAMETER_PATH + ", using the local configuration");
+            logger.catching(e);
+        }
+        resolved = true;
+        resolvedAt = System.nanoTime();
+    }
+
+    private SsmClient ssmClient() {
+        if (ssmClient == null) {
+            ssmClient = SsmClient.builder()
+                    .build();
+        }
+        return ssmClient;
+    }
+
+    static String environmentName(String parameterName) {
+        return trimSlash(parameterName).replaceAll("[^A-Za-z0-9]", "_").toUpperCase();
+    }
+
+    static String propertyName(String parameterName) {
+        return trimSlash(parameterName).replace('/', '.');
+    }
+
+    private static String trimSlash(String parameterName) {
+        return parameterName.startsWith("/") ? parameterName.substring(1) : parameterName;
+    }
+}
@@ -0,0 +1,100 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import is.tagomor.woothee.Classifier;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Device type of a bid request derived from its user agent with woothee, as in the training notebook.
+ * The user agents repeat heavily, so the categories are kept in a bounded direct mapped cache: a user agent
+ * replaces the one sharing its slot, and a hit costs one hash and one string comparison instead of the regexes.
+ * The unknown user agents get a random device type, the value imputed to the missing ones at training.
+ */
+public class DeviceTypeClassifier {
+
+    // the device types known by the model, 0 to MAX_DEVICE_TYPE
+    static final int MAX_DEVICE_TYPE = 5;
+    static final int UNKNOWN = -1;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+
+    /**
+     * @param capacity the number of user agents kept, rounded up to a power of two
+     */
+    public DeviceTypeClassifier(int capacity) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        entries = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * @param userAgent the user agent of the bid request, null or empty when the caller did not send it
+     * @return the device type id expected by the model
+     */
+    public int deviceTypeId(String userAgent) {
+        int category = UNKNOWN;
+        if (userAgent != null && !userAgent.isEmpty()) {
+            int slot = CategoryIndex.mix(userAgent.hashCode()) & mask;
+            Entry entry = entries.get(slot);
+            if (entry != null && entry.userAgent.equals(userAgent)) {
+                category = entry.deviceTypeId;
+            } else {
+                category = classify(userAgent);
+                entries.set(slot, new Entry(userAgent, category));
+            }
+        }
+        return category == UNKNOWN ? ThreadLocalRandom.current().nextInt(MAX_DEVICE_TYPE + 1) : category;
+    }
+
+    /**
+     * @return true when the device type of the user agent is served from the cache
+     */
+    boolean isCached(String userAgent) {
+        Entry entry = entries.get(CategoryIndex.mix(userAgent.hashCode()) & mask);
+        return entry != null && entry.userAgent.equals(userAgent);
+    }
+
+    /**
+     * run the woothee classifier
+     * @return the device type id of the category, UNKNOWN when woothee does not recognize the user agent
+     */
+    static int classify(String userAgent) {
+        Map<String, String> result = Classifier.parse(userAgent);
+        String category = result.get("category");
+        if (category == null) {
+            return UNKNOWN;
+        }
+        switch (category) {
+            case "smartphone":
+                return 0;
+            case "mobilephone":
+                return 1;
+            case "appliance":
+                return 2;
+            case "pc":
+                return 3;
+            case "crawler":
+                return 4;
+            case "misc":
+                return 5;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    private static final class Entry {
+        private final String userAgent;
+        private final int deviceTypeId;
+
+        private Entry(String userAgent, int deviceTypeId) {
+            this.userAgent = userAgent;
+            this.deviceTypeId = deviceTypeId;
+        }
+    }
+}
@@ -3,136 +3,186 @@
 
 package com.aik.prediction;
 
+import com.aik.prediction.artifact.ArtifactSources;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 
 
-import java.io.File;
-import java.util.AbstractMap;
-import java.util.Random;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Fetch the model artifacts into a local cache keyed by their version, the ETag of an S3 object or the
+ * size and modification time of a local file, so an unchanged artifact is never downloaded twice.
+ * Artifacts are downloaded to a temporary name then renamed, a cached file is always complete.
+ * An artifact whose source gives no version is downloaded on every fetch, and the versions of an artifact
+ * older than the one served are pruned once a bundle is swapped in.
+ * The artifacts are read through the ArtifactSource matching the scheme of their URI,
+ * s3://, file://, classpath: or http(s)://.
+ */
 public class Downloader {
 
     private static final Logger logger = LogManager.getLogger(Downloader.class.getName());
-    final private static  String transformerFileNamePrefix = "transformer" ;
-    final private static  String schemaFileNamePrefix = "schema" ;
-    final private static  String filteringFileNamePrefix = "filtering" ;
-    final private static String suffix = "model" ;
-    final private static String tempDirectory = ".tmp" ;
-
-    final private static Random generator = new Random() ;
-    final private static int MaxRandomNumber = 100000000 ;
-
-    public static AbstractMap.SimpleEntry<String,String>  parseS3Uri(String s3URI) {
-        logger.info("connection start");
-        final String regex = "^s3://([^/]+)/(.+)$" ;
-
-        final Pattern pattern = Pattern.compile(regex, Pattern.MULTILINE);
-        final Matcher matcher = pattern.matcher(s3URI);
-
-        AbstractMap.SimpleEntry<String,String> parsedURI = null ;
-
-        while (matcher.find()) {
-            System.out.println("Full match: " + matcher.group(0));
-
-            parsedURI = new AbstractMap.SimpleEntry<>(matcher.group(1), matcher.group(2) );
+    final private static int DOWNLOAD_THREADS = 3 ;
+
+    private static volatile Path cacheDirectory = Paths.get(".tmp", "cache") ;
+
+    private static final AtomicInteger downloadThreadCount = new AtomicInteger();
+    // one thread per artifact of a bundle
+    private static final ExecutorService downloads = Executors.newFixedThreadPool(DOWNLOAD_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "artifact-download-" + downloadThreadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param directory where the fetched artifacts are kept across restarts
+     */
+    public static void setCacheDirectory(Path directory) {
+        cacheDirectory = directory;
+    }
 
+    /**
+     * read the version of an artifact without downloading it
+     * @param uri the location of the artifact
+     * @return the ETag of an S3 object or the size and modification time of a file, it changes whenever the artifact is overwritten
+     */
+    public static String getVersion(String uri) {
+        URI location = URI.create(uri);
+        try {
+            return ArtifactSources.forUri(location).version(location);
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to read the version of artifact " + uri, e);
         }
-
-        return parsedURI ;
-
-
     }
 
-    public static File generateFileName(String prefix,String extension) {
-        File downloadedFile  ;
-        int randomness = generator.nextInt(MaxRandomNumber);
-        downloadedFile = new File (tempDirectory+"/"+prefix+"-" + randomness +"-" + Downloader.suffix+extension)  ;
-        return downloadedFile ;
+    /**
+     * fetch an artifact on the download threads
+     * @see #fetch(String, String, String)
+     */
+    public static CompletableFuture<String> fetchAsync(String uri, String version, String extension) {
+        return CompletableFuture.supplyAsync(() -> fetch(uri, version, extension), downloads);
     }
 
-    public static String getTransformerModel(String s3URIModelTransformer) {
-
-        AbstractMap.SimpleEntry<String,String> s3URIParsed = Downloader.parseS3Uri(s3URIModelTransformer) ;
-        File downloadedFile = Downloader.generateFileName(Downloader.transformerFileNamePrefix,".zip") ;
-
-        String keyName = s3URIParsed.getValue() ;
-        String bucketName = s3URIParsed.getKey() ;
-
-        logger.info("key name for transformer model " + keyName ) ;
-        logger.info("bucket name for transformer model" + bucketName) ;
-        S3Client s3 = S3Client.builder()
-                .build();
-
-        GetObjectRequest objectRequest = GetObjectRequest
-                .builder()
-                .key(keyName)
-                .bucket(bucketName)
-                .build();
-
-        s3.getObject(objectRequest, downloadedFile.toPath());
-        s3.close() ;
-        logger.info("Model downloaded");
-
-        return downloadedFile.getAbsolutePath();
+    /**
+     * copy an artifact into the local cache unless this version is already there
+     * @param uri the location of the artifact
+     * @param version the version of the artifact returned by getVersion
+     * @param extension the file extension expected by the loader, .zip for the MLeap bundle
+     * @return the absolute path of the cached copy
+     */
+    public static String fetch(String uri, String version, String extension) {
+        Path cached = cacheDirectory.resolve(cacheKey(uri, version) + extension);
+        // without a version a cached copy cannot be told from a changed artifact
+        if (!version.isEmpty() && Files.isRegularFile(cached)) {
+            logger.info("artifact " + uri + " found in cache " + cached);
+            return cached.toAbsolutePath().toString();
+        }
+        try {
+            Files.createDirectories(cacheDirectory);
+            Path partial = Files.createTempFile(cacheDirectory, "download-", extension);
+            URI location = URI.create(uri);
+            try (InputStream in = ArtifactSources.forUri(location).open(location)) {
+                Files.copy(in, partial, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(partial, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to fetch artifact " + uri, e);
+        }
+        logger.info("artifact " + uri + " fetched to " + cached);
+        return cached.toAbsolutePath().toString();
     }
 
-    public static String getTransformerSchema(String s3URISchema) {
-        logger.info("connection start");
-
-        AbstractMap.SimpleEntry<String,String> s3URIParsed = Downloader.parseS3Uri(s3URISchema) ;
-        File downloadedFile = Downloader.generateFileName(Downloader.schemaFileNamePrefix,".json") ;
-        String keyName = s3URIParsed.getValue() ;
-        String bucketName = s3URIParsed.getKey() ;
-
-
-
-        logger.info("key name for transformer model " + keyName ) ;
-        logger.info("bucket name for transformer model" + bucketName) ;
-        S3Client s3 = S3Client.builder()
-                .build();
-
-        GetObjectRequest objectRequest = GetObjectRequest
-                .builder()
-                .key(keyName)
-                .bucket(bucketName)
-                .build();
-
-        s3.getObject(objectRequest, downloadedFile.toPath());
-        s3.close() ;
-        logger.info("Model downloaded");
-
-        return downloadedFile.getAbsolutePath();
+    /**
+     * delete the cached copies of the other versions of an artifact, once the given version is served
+     * @param uri the location of the artifact
+     * @param version the version kept
+     */
+    public static void prune(String uri, String version) {
+        String uriKey = uriKey(uri) + "-";
+        String kept = cacheKey(uri, version) + ".";
+        if (!Files.isDirectory(cacheDirectory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(uriKey) && !name.startsWith(kept);
+            }).forEach(file -> {
+                try {
+                    Files.deleteIfExists(file);
+                    logger.info("artifact " + uri + " pruned from cache " + file);
+                } catch (IOException e) {
+                    logger.warn("unable to prune " + file + " from the artifact cache", e);
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("unable to prune the cached versions of artifact " + uri, e);
+        }
     }
 
-    public static String getFilteringModel(String s3URIFilteringModel) {
-        AbstractMap.SimpleEntry<String,String> s3URIParsed = Downloader.parseS3Uri(s3URIFilteringModel) ;
-        File downloadedFile = Downloader.generateFileName(Downloader.filteringFileNamePrefix,".bin") ;
-
-
-        String keyName = s3URIParsed.getValue() ;
-        String bucketName = s3URIParsed.getKey() ;
+    /**
+     * stream an artifact straight into memory, without going through the cache
+     * @param uri the location of the artifact
+     * @return the content of the artifact
+     */
+    public static byte[] read(String uri) {
+        URI location = URI.create(uri);
+        try (InputStream in = ArtifactSources.forUri(location).open(location)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            in.transferTo(content);
+            logger.info("artifact " + uri + " read in memory, " + content.size() + " bytes");
+            return content.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to read artifact " + uri, e);
+        }
+    }
 
-        logger.info("key name for transformer model " + keyName ) ;
-        logger.info("bucket name for transformer model" + bucketName) ;
-        S3Client s3 = S3Client.builder()
-                .build();
-        GetObjectRequest objectRequest = GetObjectRequest
-                .builder()
-                .key(keyName)
-                .bucket(bucketName)
-                .build();
+    /**
+     * read an artifact on the download threads
+     * @see #read(String)
+     */
+    public static CompletableFuture<byte[]> readAsync(String uri) {
+        return CompletableFuture.supplyAsync(() -> read(uri), downloads);
+    }
 
-        s3.getObject(objectRequest, downloadedFile.toPath());
-        s3.close() ;
-        logger.info("Model  found");
-        logger.info(downloadedFile.getAbsolutePath());
+    /**
+     * the ETag holds quotes, keep a file name friendly version of it prefixed by a digest of the location
+     * since the version of a local file is not unique across files
+     */
+    static String cacheKey(String uri, String version) {
+        return uriKey(uri) + "-" + version.replaceAll("[^A-Za-z0-9_-]", "");
+    }
 
-        return downloadedFile.getAbsolutePath();
+    /**
+     * @return the SHA-256 of the location in hexadecimal, two artifacts never share their cached copies
+     */
+    private static String uriKey(String uri) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return String.format("%064x", new BigInteger(1, digest.digest(uri.getBytes(StandardCharsets.UTF_8))));
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM provides SHA-256
+            throw new IllegalStateException(e);
+        }
     }
 
-}
\ No newline at end of file
+}
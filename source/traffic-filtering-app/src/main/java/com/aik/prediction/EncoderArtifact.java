@@ -0,0 +1,181 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary form of the feature encoder, written once from the MLeap pipeline and memory mapped by the server
+ * without loading MLeap. All values are big endian:
+ * <pre>
+ * int magic, int format version, int number of columns
+ * for every column:
+ *   short name length, name UTF-8 bytes, byte keepInvalid, int number of labels n, int blob length
+ *   int[n + 1] offsets of the sorted labels in the blob, int[n] model index of the sorted labels, blob
+ *   since version 2: int hash table size t, 0 when the column has no hash index,
+ *   int[t] slots holding the sorted position of a label plus one, 0 for an empty slot
+ * </pre>
+ * The columns with many labels get a hash index, the smaller ones are binary searched.
+ */
+public final class EncoderArtifact {
+
+    static final int MAGIC = 0x41494B45;
+    static final int FORMAT_VERSION = 2;
+    // below this size a binary search touches fewer cache lines than the hash index is worth
+    static final int HASH_INDEX_MIN_LABELS = 1024;
+    private static final String[] COLUMNS = {
+            FeatureEncoder.ADVERTISER_COLUMN, FeatureEncoder.DOMAIN_COLUMN,
+            FeatureEncoder.REGION_COLUMN, FeatureEncoder.CITY_COLUMN
+    };
+
+    private EncoderArtifact() {
+    }
+
+    /**
+     * write the labels of every index column of an encoder
+     * @param encoder the encoder compiled from the MLeap pipeline
+     * @param output the artifact file
+     */
+    public static void write(FeatureEncoder encoder, Path output) throws IOException {
+        write(encoder, output, HASH_INDEX_MIN_LABELS);
+    }
+
+    /**
+     * @param hashIndexMinLabels the number of labels from which a column gets a hash index
+     */
+    static void write(FeatureEncoder encoder, Path output, int hashIndexMinLabels) throws IOException {
+        try (OutputStream file = Files.newOutputStream(output);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(COLUMNS.length);
+            for (String column : COLUMNS) {
+                writeColumn(out, column, encoder.categoryIndex(column), hashIndexMinLabels);
+            }
+        }
+    }
+
+    private static void writeColumn(DataOutputStream out, String column, CategoryIndex index,
+                                    int hashIndexMinLabels) throws IOException {
+        String[] labels = index.labels();
+        byte[][] encoded = new byte[labels.length][];
+        Integer[] sorted = new Integer[labels.length];
+        int blobLength = 0;
+        for (int i = 0; i < labels.length; i++) {
+            encoded[i] = labels[i].getBytes(StandardCharsets.UTF_8);
+            sorted[i] = i;
+            blobLength += encoded[i].length;
+        }
+        // the unsigned byte order of UTF-8 is the code point order used by the lookups
+        Arrays.sort(sorted, Comparator.comparing(i -> encoded[i], Arrays::compareUnsigned));
+
+        byte[] name = column.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(name.length);
+        out.write(name);
+        out.writeByte(index.keepInvalid() ? 1 : 0);
+        out.writeInt(labels.length);
+        out.writeInt(blobLength);
+        int offset = 0;
+        for (int i : sorted) {
+            out.writeInt(offset);
+            offset += encoded[i].length;
+        }
+        out.writeInt(offset);
+        for (int i : sorted) {
+            out.writeInt(i);
+        }
+        for (int i : sorted) {
+            out.write(encoded[i]);
+        }
+        if (labels.length < hashIndexMinLabels) {
+            out.writeInt(0);
+            return;
+        }
+        int tableSize = CategoryIndex.tableSize(labels.length);
+        int[] slots = new int[tableSize];
+        for (int position = 0; position < sorted.length; position++) {
+            int slot = CategoryIndex.mix(MappedHashCategoryIndex.utf8Hash(encoded[sorted[position]])) & (tableSize - 1);
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            slots[slot] = position + 1;
+        }
+        out.writeInt(tableSize);
+        for (int slot : slots) {
+            out.writeInt(slot);
+        }
+    }
+
+    /**
+     * map an artifact file, the tables are read in place so the load time does not depend on the number of labels.
+     * The mapping is read only and backed by the page cache, the servers of a host mapping the same cached file share it
+     * @param input the artifact file
+     * @return the encoder looking up the labels in the mapped file
+     */
+    public static FeatureEncoder load(Path input) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException(input + " is not an encoder artifact");
+        }
+        int formatVersion = buffer.getInt();
+        if (formatVersion < 1 || formatVersion > FORMAT_VERSION) {
+            throw new IOException("unsupported encoder artifact version " + formatVersion + " in " + input);
+        }
+        int nbColumns = buffer.getInt();
+        Map<String, CategoryIndex> columns = new HashMap<>();
+        for (int column = 0; column < nbColumns; column++) {
+            byte[] name = new byte[buffer.getShort()];
+            buffer.get(name);
+            boolean keepInvalid = buffer.get() != 0;
+            int nbLabels = buffer.getInt();
+            int blobLength = buffer.getInt();
+            ByteBuffer offsets = slice(buffer, (nbLabels + 1) * Integer.BYTES);
+            ByteBuffer indexes = slice(buffer, nbLabels * Integer.BYTES);
+            ByteBuffer blob = slice(buffer, blobLength);
+            int tableSize = formatVersion >= 2 ? buffer.getInt() : 0;
+            CategoryIndex index;
+            if (tableSize > 0) {
+                ByteBuffer slots = slice(buffer, tableSize * Integer.BYTES);
+                index = new MappedHashCategoryIndex(nbLabels, keepInvalid, offsets, indexes, blob, slots, tableSize);
+            } else {
+                index = new SortedTableCategoryIndex(nbLabels, keepInvalid, offsets, indexes, blob);
+            }
+            columns.put(new String(name, StandardCharsets.UTF_8), index);
+        }
+        for (String column : COLUMNS) {
+            if (!columns.containsKey(column)) {
+                throw new IOException("column " + column + " missing from encoder artifact " + input);
+            }
+        }
+        return new FeatureEncoder(columns.get(FeatureEncoder.ADVERTISER_COLUMN), columns.get(FeatureEncoder.DOMAIN_COLUMN),
+                columns.get(FeatureEncoder.REGION_COLUMN), columns.get(FeatureEncoder.CITY_COLUMN));
+    }
+
+    /**
+     * @return a view of the next length bytes, the buffer is moved past them
+     */
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+}
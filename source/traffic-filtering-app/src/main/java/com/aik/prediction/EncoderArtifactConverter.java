@@ -0,0 +1,35 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * One time conversion of the MLeap pipeline bundle and its schema into an encoder artifact,
+ * run after each training so the servers can start without MLeap.
+ * Usage: EncoderArtifactConverter transformer-model.zip schema.json encoder.bin
+ */
+public class EncoderArtifactConverter {
+
+    private static final Logger logger = LogManager.getLogger(EncoderArtifactConverter.class.getName());
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: EncoderArtifactConverter <pipeline bundle zip> <schema json> <encoder artifact>");
+            System.exit(1);
+        }
+        Transform transform = Transform$.MODULE$.load(Paths.get(args[0]).toAbsolutePath().toString(), args[1]);
+        if (transform.encoder() == null) {
+            throw new IllegalStateException("the pipeline " + args[0] + " holds stages other than StringIndexer,"
+                    + " it can only be served through MLeap");
+        }
+        EncoderArtifact.write(transform.encoder(), Paths.get(args[2]));
+        logger.warn("encoder artifact " + args[2] + " written, " + Files.size(Paths.get(args[2])) + " bytes");
+    }
+}
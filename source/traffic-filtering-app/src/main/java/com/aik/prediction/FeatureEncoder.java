@@ -0,0 +1,131 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import com.aik.filterapi.BidRequest;
+
+import java.util.List;
+
+/**
+ * Native encoding of a bid request into the feature vector of the filtering model,
+ * compiled once from the StringIndexer stages of the MLeap pipeline.
+ * The vector holds dow, hour, IndexAdvertiserID, IndexDomain, IndexRegionID, IndexCityID and the device type.
+ * A request MLeap would reject is rejected too: an unseen or missing label of an indexer without
+ * handleInvalid=keep, or an hour which is not a number.
+ */
+public class FeatureEncoder implements FeatureTransformer {
+
+    public static final int NB_FEATURES = 7;
+    public static final String ADVERTISER_COLUMN = "IndexAdvertiserID";
+    public static final String DOMAIN_COLUMN = "IndexDomain";
+    public static final String REGION_COLUMN = "IndexRegionID";
+    public static final String CITY_COLUMN = "IndexCityID";
+    /**
+     * column names of the training dataset in feature vector order, a model trained with feature names splits on them
+     */
+    public static final String[] FEATURE_NAMES = {"dow", "hour", ADVERTISER_COLUMN, DOMAIN_COLUMN, REGION_COLUMN,
+            CITY_COLUMN, "device_type_id"};
+
+    private final CategoryIndex advertiserIndex;
+    private final CategoryIndex domainIndex;
+    private final CategoryIndex regionIndex;
+    private final CategoryIndex cityIndex;
+
+    public FeatureEncoder(CategoryIndex advertiserIndex, CategoryIndex domainIndex,
+                          CategoryIndex regionIndex, CategoryIndex cityIndex) {
+        this.advertiserIndex = advertiserIndex;
+        this.domainIndex = domainIndex;
+        this.regionIndex = regionIndex;
+        this.cityIndex = cityIndex;
+    }
+
+    /**
+     * encode a bid request without allocating
+     * @param request the bid request
+     * @param features receives the NB_FEATURES values of the request
+     * @throws UnseenLabelException when MLeap would reject the request
+     */
+    public void encode(BidRequest request, float[] features) {
+        features[0] = request.dayOfWeek;
+        features[1] = parseHour(request.hour);
+        if (Float.isNaN(features[1])) {
+            throw new UnseenLabelException("hour", request.hour);
+        }
+        features[2] = indexOf(advertiserIndex, request.advertiserId, ADVERTISER_COLUMN);
+        features[3] = indexOf(domainIndex, request.domainId, DOMAIN_COLUMN);
+        features[4] = indexOf(regionIndex, request.regionId, REGION_COLUMN);
+        features[5] = indexOf(cityIndex, request.cityId, CITY_COLUMN);
+        features[6] = request.deviceTypeId;
+    }
+
+    /**
+     * @return the index of the label, the keep bucket when the indexer has one
+     * @throws UnseenLabelException when the label is unknown and the indexer has no keep bucket
+     */
+    private static float indexOf(CategoryIndex index, String label, String column) {
+        float value = index.indexOf(label);
+        if (Float.isNaN(value)) {
+            throw new UnseenLabelException(column, label);
+        }
+        return value;
+    }
+
+    @Override
+    public void transformInto(BidRequest request, float[] features) {
+        encode(request, features);
+    }
+
+    @Override
+    public void transformBatchInto(List<BidRequest> requests, float[] features) {
+        float[] row = new float[NB_FEATURES];
+        for (int i = 0; i < requests.size(); i++) {
+            encode(requests.get(i), row);
+            System.arraycopy(row, 0, features, i * NB_FEATURES, NB_FEATURES);
+        }
+    }
+
+    @Override
+    public String[] labels(String indexColumn) {
+        CategoryIndex index = categoryIndex(indexColumn);
+        return index == null ? new String[0] : index.labels();
+    }
+
+    /**
+     * @param indexColumn the index column of the model, IndexAdvertiserID for example
+     * @return the table encoding the column, null when the column is unknown
+     */
+    public CategoryIndex categoryIndex(String indexColumn) {
+        switch (indexColumn) {
+            case ADVERTISER_COLUMN:
+                return advertiserIndex;
+            case DOMAIN_COLUMN:
+                return domainIndex;
+            case REGION_COLUMN:
+                return regionIndex;
+            case CITY_COLUMN:
+                return cityIndex;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * the hour column is a two digits string passed through the pipeline unchanged
+     * @return the hour, NaN when it is not a number
+     */
+    static float parseHour(String hour) {
+        if (hour == null || hour.isEmpty() || hour.length() > 9) {
+            return Float.NaN;
+        }
+        int value = 0;
+        for (int i = 0; i < hour.length(); i++) {
+            char c = hour.charAt(i);
+            if (c < '0' || c > '9') {
+                return Float.NaN;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,33 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import com.aik.filterapi.BidRequest;
+
+import java.util.List;
+
+/**
+ * Encoding of the bid requests into the feature vectors of the filtering model, either through the
+ * MLeap pipeline (Transform) or through the native lookup tables alone (FeatureEncoder).
+ */
+public interface FeatureTransformer {
+
+    /**
+     * @param request the bid request to transform
+     * @param features receives the FeatureEncoder.NB_FEATURES values of the request
+     */
+    void transformInto(BidRequest request, float[] features);
+
+    /**
+     * @param requests the bid requests to transform
+     * @param features receives the feature vectors row-major, FeatureEncoder.NB_FEATURES values per request
+     */
+    void transformBatchInto(List<BidRequest> requests, float[] features);
+
+    /**
+     * @param indexColumn the index column of the model, IndexAdvertiserID for example
+     * @return the labels known for the column in index order, empty when the column is unknown
+     */
+    String[] labels(String indexColumn);
+}
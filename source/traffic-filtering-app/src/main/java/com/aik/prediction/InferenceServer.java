@@ -3,19 +3,49 @@
 
 package com.aik.prediction;
 
+import com.aik.filterapi.BidRequest;
 import com.aik.filterapi.BidRequestFilter;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.server.TServer;
 import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+import org.apache.thrift.transport.TNonblockingServerTransport;
 import org.apache.thrift.transport.TServerSocket;
 import org.apache.thrift.transport.TServerTransport;
+import org.apache.thrift.transport.TTransportException;
+import org.apache.thrift.transport.layered.TFramedTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class InferenceServer {
 
     private static final Logger logger = LogManager.getLogger(InferenceServer.class.getName());
 
+    /**
+     * server engine multiplexing all connections on a few selector threads, requires framed transport
+     */
+    public static final String SELECTOR_MODE = "selector";
+    /**
+     * server engine dedicating one worker thread to every open connection
+     */
+    public static final String THREAD_POOL_MODE = "threadpool";
+
     public static BidRequestHandler handler;
 
     public static BidRequestFilter.Processor<BidRequestFilter.Iface> processor;
@@ -27,30 +57,166 @@ public class InferenceServer {
 
             handler = new BidRequestHandler();
             handler.init();
+            Runtime.getRuntime().addShutdownHook(new Thread(handler::close, "handler-shutdown"));
             processor = new BidRequestFilter.Processor<>(handler);
 
-            Runnable simple = () -> simple(processor);
+            Properties prop = loadProperties();
+            warmUp(handler, prop);
+            Runnable serve = () -> serve(processor, prop);
 
-            new Thread(simple).start();
+            new Thread(serve).start();
         } catch (Exception x) {
             x.printStackTrace();
         }
     }
 
-    public static void simple(BidRequestFilter.Processor<BidRequestFilter.Iface> processor) {
+    /**
+     * run the configured number of bid requests through the handler before the socket opens
+     */
+    private static void warmUp(BidRequestHandler handler, Properties prop) {
+        int iterations = Integer.parseInt(prop.getProperty("aik.inference.warmup.requests", "0"));
+        String requestsFile = prop.getProperty("aik.inference.warmup.requests.file", "");
+        List<BidRequest> requests;
         try {
-            TServerTransport serverTransport = new TServerSocket(9090);
-
-            // Use this for a multithreaded server
-            TThreadPoolServer.Args pool = new TThreadPoolServer.Args(serverTransport).processor(processor);
-            pool.minWorkerThreads(8);
-            pool.minWorkerThreads(2);
-            TServer server = new TThreadPoolServer(pool);
+            requests = requestsFile.isEmpty()
+                    ? WarmUp.syntheticRequests(handler.getModel().getTransform(), 1000)
+                    : WarmUp.recordedRequests(requestsFile);
+        } catch (IOException e) {
+            logger.error("unable to read the warm-up requests from " + requestsFile, e);
+            return;
+        }
+        handler.startWarmUp();
+        try {
+            new WarmUp(handler, iterations).run(requests);
+        } finally {
+            handler.endWarmUp();
+        }
+    }
 
-            logger.info("Starting the simple server...");
+    /**
+     * start the server engine selected by aik.inference.server.mode
+     * @param processor the thrift processor handling the bid requests
+     * @param prop the server configuration
+     */
+    public static void serve(BidRequestFilter.Processor<BidRequestFilter.Iface> processor, Properties prop) {
+        // the selector engine only reads framed messages, it is opt-in so the unframed clients keep working
+        String mode = prop.getProperty("aik.inference.server.mode", THREAD_POOL_MODE);
+        int port = Integer.parseInt(prop.getProperty("aik.inference.server.port", "9090"));
+        try {
+            TServer server;
+            if (SELECTOR_MODE.equals(mode)) {
+                server = threadedSelector(processor, port, prop);
+            } else {
+                server = threadPool(processor, port, prop);
+            }
+            logger.warn("Starting the " + mode + " server on port " + port);
             server.serve();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * build a server accepting connections and reading frames on a few selector threads
+     * and handing complete requests to a bounded pool of worker threads
+     */
+    private static TServer threadedSelector(BidRequestFilter.Processor<BidRequestFilter.Iface> processor,
+                                            int port, Properties prop) throws TTransportException {
+        int selectorThreads = Integer.parseInt(prop.getProperty("aik.inference.server.selector.threads", "2"));
+        int workerThreads = Integer.parseInt(prop.getProperty("aik.inference.server.worker.threads", "4"));
+        int workerQueueSize = Integer.parseInt(prop.getProperty("aik.inference.server.worker.queue.size", "0"));
+        int acceptQueueSize = Integer.parseInt(prop.getProperty("aik.inference.server.accept.queue.size", "4"));
+
+        logger.warn("selector threads " + selectorThreads + " worker threads " + workerThreads
+                + " worker queue size " + workerQueueSize + " accept queue size " + acceptQueueSize);
+
+        TNonblockingServerTransport serverTransport = new TNonblockingServerSocket(port);
+        TThreadedSelectorServer.Args selector = new TThreadedSelectorServer.Args(serverTransport)
+                .processor(processor)
+                .transportFactory(new TFramedTransport.Factory())
+                .protocolFactory(timedProtocol())
+                .selectorThreads(selectorThreads)
+                .acceptQueueSizePerThread(acceptQueueSize)
+                .acceptPolicy(TThreadedSelectorServer.Args.AcceptPolicy.FAST_ACCEPT)
+                .executorService(workerPool(workerThreads, workerQueueSize, admission(prop)));
+        return new TThreadedSelectorServer(selector);
+    }
+
+    /**
+     * build a server dedicating one worker thread to every open connection
+     */
+    private static TServer threadPool(BidRequestFilter.Processor<BidRequestFilter.Iface> processor,
+                                      int port, Properties prop) throws TTransportException {
+        int minWorkerThreads = Integer.parseInt(prop.getProperty("aik.inference.server.threadpool.min.threads", "8"));
+        // unbounded by default as before, every connection keeps its worker thread until it closes
+        int maxWorkerThreads = Integer.parseInt(prop.getProperty("aik.inference.server.threadpool.max.threads",
+                String.valueOf(Integer.MAX_VALUE)));
+
+        logger.warn("min worker threads " + minWorkerThreads + " max worker threads " + maxWorkerThreads);
+
+        TServerTransport serverTransport = new TServerSocket(port);
+        TThreadPoolServer.Args pool = new TThreadPoolServer.Args(serverTransport)
+                .processor(processor)
+                .protocolFactory(timedProtocol());
+        pool.minWorkerThreads(minWorkerThreads);
+        pool.maxWorkerThreads(maxWorkerThreads);
+        return new TThreadPoolServer(pool);
+    }
+
+    /**
+     * binary protocol recording the read and write stages of every call in the handler histograms
+     */
+    private static TProtocolFactory timedProtocol() {
+        return new TimedProtocol.Factory(new TBinaryProtocol.Factory(), handler.getReadLatency(), handler.getWriteLatency());
+    }
+
+    /**
+     * admission control of the selector engine, shedding the requests once the wait for a worker stays above the target
+     * @return null when aik.inference.admission.target.us is 0
+     */
+    private static QueueDelayAdmission admission(Properties prop) {
+        long targetMicros = Long.parseLong(prop.getProperty("aik.inference.admission.target.us", "0"));
+        long intervalMicros = Long.parseLong(prop.getProperty("aik.inference.admission.interval.us", "100000"));
+        if (targetMicros <= 0) {
+            return null;
+        }
+        logger.warn("admission target queue delay (us) " + targetMicros + " interval (us) " + intervalMicros);
+        QueueDelayAdmission admission = new QueueDelayAdmission(targetMicros, intervalMicros);
+        handler.setAdmission(admission);
+        return admission;
+    }
+
+    /**
+     * executor running the requests read by the selector threads
+     * @param workerThreads number of threads invoking the handler
+     * @param queueSize maximum number of pending requests, 0 for an unbounded queue
+     * @param admission records how long every request waited for a worker, null for no admission control
+     */
+    private static ExecutorService workerPool(int workerThreads, int queueSize, QueueDelayAdmission admission) {
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new LinkedBlockingQueue<>();
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "filtering-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        if (admission != null) {
+            return admission.executor(workerThreads, queue, threadFactory);
+        }
+        return new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS, queue, threadFactory);
+    }
+
+    private static Properties loadProperties() {
+        Properties prop = new Properties();
+        try (InputStream input = InferenceServer.class.getClassLoader().getResourceAsStream("config.properties")) {
+            if (input == null) {
+                logger.error("Sorry, unable to find config.properties");
+                return prop;
+            }
+            prop.load(input);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        return prop;
+    }
 }
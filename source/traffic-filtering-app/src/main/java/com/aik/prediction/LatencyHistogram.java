@@ -0,0 +1,113 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed memory log-linear histogram of latencies in nanoseconds.
+ * Every power of two is split in 32 linear buckets, a recorded value is reported as the middle of its bucket,
+ * within 1/64 (about 1.6%) of the value.
+ * A histogram is written by a single thread and drained concurrently by the reporting thread.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // the last power of two starts at 2^40 ns, values above 2^41 - 1 ns (about 36 minutes) are counted in its last bucket
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * @param nanos the latency to record, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        counts.getAndIncrement(bucketOf(nanos));
+    }
+
+    /**
+     * move the counts recorded so far into the given snapshot and reset this histogram
+     * @param snapshot the per bucket counts the drained values are added to
+     */
+    void drainTo(long[] snapshot) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts.get(i) != 0) {
+                snapshot[i] += counts.getAndSet(i, 0);
+            }
+        }
+    }
+
+    static int bucketOf(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * @return the middle of the range of values counted in the bucket
+     */
+    static long valueOf(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + bucket % SUB_BUCKET_COUNT) << shift;
+        return lowest + ((1L << shift) >>> 1);
+    }
+
+    /**
+     * read only view over drained counts
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long totalCount;
+
+        Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.totalCount = total;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the latency in nanoseconds below which the given percentage of the values fall, 0 when empty
+         */
+        public long valueAtPercentile(double percentile) {
+            if (totalCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.d * totalCount));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return valueOf(i);
+                }
+            }
+            return valueOf(counts.length - 1);
+        }
+
+        public long getMaxValue() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return valueOf(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Latency of one processing stage, recorded without contention in a histogram per thread.
+ * The histograms are merged and reset by snapshot, so every snapshot covers the window since the previous one.
+ * The histogram of a thread which ended is dropped once its last latencies are merged, the worker threads
+ * of the thread pool server come and go with the connections.
+ * Nothing is sent per call, the reporter publishes the percentiles of every snapshot.
+ */
+public class LatencyRecorder {
+
+    private final String stage;
+    private final List<ThreadHistogram> histograms = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<LatencyHistogram> threadHistogram = ThreadLocal.withInitial(this::register);
+
+    public LatencyRecorder(String stage) {
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+
+    /**
+     * @param startNanos the System.nanoTime value taken when the stage started
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        threadHistogram.get().record(nanos);
+    }
+
+    /**
+     * merge the latencies recorded by every thread since the previous snapshot
+     */
+    public LatencyHistogram.Snapshot snapshot() {
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        for (ThreadHistogram registered : histograms) {
+            // a thread which ended records nothing more, its histogram is dropped after this last drain
+            boolean ended = registered.ended();
+            registered.histogram.drainTo(counts);
+            if (ended) {
+                histograms.remove(registered);
+            }
+        }
+        return new LatencyHistogram.Snapshot(counts);
+    }
+
+    /**
+     * @return the number of histograms merged by snapshot, one per thread which recorded since the previous one
+     */
+    int histogramCount() {
+        return histograms.size();
+    }
+
+    private LatencyHistogram register() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histograms.add(new ThreadHistogram(Thread.currentThread(), histogram));
+        return histogram;
+    }
+
+    /**
+     * histogram of a thread, the thread is weakly referenced so a recorder does not keep it
+     */
+    private static final class ThreadHistogram {
+        private final WeakReference<Thread> owner;
+        private final LatencyHistogram histogram;
+
+        private ThreadHistogram(Thread owner, LatencyHistogram histogram) {
+            this.owner = new WeakReference<>(owner);
+            this.histogram = histogram;
+        }
+
+        private boolean ended() {
+            Thread thread = owner.get();
+            return thread == null || !thread.isAlive();
+        }
+    }
+}
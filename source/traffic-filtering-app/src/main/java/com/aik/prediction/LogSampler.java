@@ -0,0 +1,25 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Pick about one request in N for detailed logging, without shared state between the worker threads.
+ */
+public class LogSampler {
+
+    private final int rate;
+
+    /**
+     * @param rate log one request in rate, 1 logs every request and 0 disables the sampled logs
+     */
+    public LogSampler(int rate) {
+        this.rate = rate;
+    }
+
+    public boolean sample() {
+        return rate == 1 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) == 0);
+    }
+}
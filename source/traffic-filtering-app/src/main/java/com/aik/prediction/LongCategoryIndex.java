@@ -0,0 +1,90 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table keyed by primitive longs, for numeric identifiers such as RegionID or CityID.
+ */
+public class LongCategoryIndex extends CategoryIndex {
+
+    private static final int MAX_DIGITS = 18;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask;
+
+    LongCategoryIndex(String[] labels, boolean keepInvalid) {
+        super(labels.length, keepInvalid);
+        int capacity = tableSize(labels.length);
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, -1);
+        mask = capacity - 1;
+        for (int index = 0; index < labels.length; index++) {
+            long key = Long.parseLong(labels[index]);
+            int slot = mix(key) & mask;
+            while (values[slot] >= 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] < 0) {
+                keys[slot] = key;
+                values[slot] = index;
+            }
+        }
+    }
+
+    @Override
+    protected int lookup(String label) {
+        if (!isCanonicalLong(label)) {
+            return -1;
+        }
+        long key = Long.parseLong(label);
+        int slot = mix(key) & mask;
+        int index;
+        while ((index = values[slot]) >= 0) {
+            if (keys[slot] == key) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public String[] labels() {
+        String[] labels = new String[size()];
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] >= 0) {
+                labels[values[slot]] = Long.toString(keys[slot]);
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * only the canonical decimal strings are keyed as longs, "007" or "+7" are different labels than "7"
+     */
+    static boolean isCanonicalLong(String label) {
+        if (label == null) {
+            return false;
+        }
+        int start = label.startsWith("-") ? 1 : 0;
+        int length = label.length() - start;
+        if (length == 0 || length > MAX_DIGITS) {
+            return false;
+        }
+        if (label.charAt(start) == '0' && (length > 1 || start == 1)) {
+            return false;
+        }
+        for (int i = start; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Sorted table of an encoder artifact with an open addressing hash index next to it in the mapped file,
+ * for the high cardinality columns such as Domain or CityID. The labels are hashed on their UTF-8 bytes,
+ * computed from the characters of the request string, so a lookup reads one or two slots without decoding
+ * nor allocating. The file stays off the heap and the processes mapping the same file share its pages.
+ */
+public class MappedHashCategoryIndex extends SortedTableCategoryIndex {
+
+    private static final int FNV_OFFSET_BASIS = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final ByteBuffer slots;
+    private final int mask;
+
+    /**
+     * @param slots tableSize int slots holding the position of a label in the sorted table plus one, 0 when empty
+     * @param tableSize a power of two
+     */
+    MappedHashCategoryIndex(int nbLabels, boolean keepInvalid, ByteBuffer offsets, ByteBuffer indexes, ByteBuffer blob,
+                            ByteBuffer slots, int tableSize) {
+        super(nbLabels, keepInvalid, offsets, indexes, blob);
+        this.slots = slots;
+        this.mask = tableSize - 1;
+    }
+
+    @Override
+    protected int lookup(String label) {
+        int slot = mix(utf8Hash(label)) & mask;
+        int position;
+        while ((position = slots.getInt(slot * Integer.BYTES)) != 0) {
+            if (compareAt(label, position - 1) == 0) {
+                return indexAt(position - 1);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * FNV-1a hash of the UTF-8 encoding of a string, without encoding it
+     */
+    static int utf8Hash(String label) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < label.length(); ) {
+            int codePoint = label.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (codePoint < 0x80) {
+                hash = (hash ^ codePoint) * FNV_PRIME;
+            } else if (codePoint < 0x800) {
+                hash = (hash ^ (0xC0 | codePoint >> 6)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint & 0x3F)) * FNV_PRIME;
+            } else if (codePoint < 0x10000) {
+                hash = (hash ^ (0xE0 | codePoint >> 12)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint >> 6 & 0x3F)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint & 0x3F)) * FNV_PRIME;
+            } else {
+                hash = (hash ^ (0xF0 | codePoint >> 18)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint >> 12 & 0x3F)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint >> 6 & 0x3F)) * FNV_PRIME;
+                hash = (hash ^ (0x80 | codePoint & 0x3F)) * FNV_PRIME;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * FNV-1a hash of UTF-8 bytes, equal to utf8Hash of the decoded string
+     */
+    static int utf8Hash(byte[] bytes) {
+        int hash = FNV_OFFSET_BASIS;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * FNV_PRIME;
+        }
+        return hash;
+    }
+}
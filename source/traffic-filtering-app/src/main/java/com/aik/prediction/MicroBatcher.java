@@ -0,0 +1,239 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Merge the concurrent single bid request predictions into multi-row predictions.
+ * A batch is flushed to the bidding filter as soon as it holds maxBatchSize requests
+ * or its oldest request has waited maxDelayMicros, whichever comes first.
+ * Every request carries the filter of the model bundle it was transformed with, so a batch
+ * spanning a model reload is scored in one call per filter.
+ * A caller never waits more than waitTimeoutMicros for its batch: past it, the request is scored
+ * on the caller thread, so a stuck or dead flush thread slows the requests down but never hangs them.
+ */
+public class MicroBatcher implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(MicroBatcher.class.getName());
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long waitTimeoutNanos;
+    private final BlockingQueue<PendingPrediction> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> flushers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    /**
+     * @param maxBatchSize number of requests flushed at once
+     * @param maxDelayMicros longest wait of the first request of a batch for the next ones
+     * @param waitTimeoutMicros longest wait of a caller for its batch, before it scores its request itself
+     * @param flushThreads number of threads scoring the batches
+     */
+    public MicroBatcher(int maxBatchSize, long maxDelayMicros, long waitTimeoutMicros, int flushThreads) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.waitTimeoutNanos = TimeUnit.MICROSECONDS.toNanos(waitTimeoutMicros);
+        for (int i = 0; i < flushThreads; i++) {
+            Thread flusher = new Thread(this::run, "micro-batcher-" + i);
+            flusher.setDaemon(true);
+            flusher.start();
+            flushers.add(flusher);
+        }
+        logger.warn("micro batching enabled, max batch size " + maxBatchSize + " max delay (us) " + maxDelayMicros
+                + " wait timeout (us) " + waitTimeoutMicros + " flush threads " + flushThreads);
+    }
+
+    /**
+     * queue a feature vector and wait for the batch holding it to be scored, the request is scored on
+     * the caller thread once the batcher is closed or when its batch is not scored within the wait timeout
+     * @param filter the filter of the model bundle the features were computed with
+     * @param features the feature vector of one bid request
+     * @return the likelihood to bid, -1 when the prediction failed
+     */
+    public double filter(BiddingFilter filter, float[] features) throws InterruptedException {
+        if (!running) {
+            return filter.filter(features);
+        }
+        PendingPrediction pending = new PendingPrediction(filter, features);
+        queue.put(pending);
+        if (!running && queue.remove(pending)) {
+            // closed meanwhile, the flush threads may be gone already
+            return filter.filter(features);
+        }
+        if (pending.await(pending.enqueuedAt + waitTimeoutNanos)) {
+            return pending.likelihood;
+        }
+        // still queued, or taken by a flush thread which did not score it in time
+        queue.remove(pending);
+        logger.warn("batch not scored within {} us, scoring on the caller thread",
+                TimeUnit.NANOSECONDS.toMicros(waitTimeoutNanos));
+        return filter.filter(features);
+    }
+
+    private void run() {
+        List<PendingPrediction> batch = new ArrayList<>(maxBatchSize);
+        // feature matrix owned by this flush thread, reused by every batch
+        float[] rows = new float[maxBatchSize * FeatureEncoder.NB_FEATURES];
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingPrediction first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long flushDeadline = first.enqueuedAt + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = flushDeadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingPrediction next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch, rows);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // answer the batch in hand and everything still queued before exiting
+                flush(batch, rows);
+                drain(rows);
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * score everything left in the queue, batch by batch
+     */
+    private void drain(float[] rows) {
+        List<PendingPrediction> batch = new ArrayList<>(maxBatchSize);
+        while (queue.drainTo(batch, maxBatchSize) > 0) {
+            flush(batch, rows);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<PendingPrediction> batch, float[] rows) {
+        int from = 0;
+        while (from < batch.size()) {
+            BiddingFilter filter = batch.get(from).filter;
+            int to = from + 1;
+            while (to < batch.size() && batch.get(to).filter == filter) {
+                to++;
+            }
+            flush(filter, batch.subList(from, to), rows);
+            from = to;
+        }
+    }
+
+    private void flush(BiddingFilter filter, List<PendingPrediction> batch, float[] rows) {
+        double[] likelihoods;
+        // the callers hold the filter, unless they gave up waiting and the model was replaced meanwhile
+        if (!filter.acquire()) {
+            for (PendingPrediction pending : batch) {
+                pending.complete(-1);
+            }
+            return;
+        }
+        try {
+            int nbColumns = batch.get(0).features.length;
+            if (rows.length < batch.size() * nbColumns) {
+                rows = new float[batch.size() * nbColumns];
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                System.arraycopy(batch.get(i).features, 0, rows, i * nbColumns, nbColumns);
+            }
+            likelihoods = filter.filterBatch(rows, batch.size(), nbColumns);
+        } catch (RuntimeException e) {
+            logger.catching(e);
+            likelihoods = new double[batch.size()];
+            Arrays.fill(likelihoods, -1);
+        } finally {
+            filter.release();
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(likelihoods[i]);
+        }
+    }
+
+    /**
+     * stop batching, the flush threads score what is still queued and exit.
+     * The requests still queued once they are gone are scored on the closing thread
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Thread flusher : flushers) {
+            flusher.interrupt();
+        }
+        for (Thread flusher : flushers) {
+            try {
+                flusher.join(CLOSE_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        drain(new float[maxBatchSize * FeatureEncoder.NB_FEATURES]);
+    }
+
+    /**
+     * a feature vector waiting in the queue, the caller thread is parked until the batch is scored
+     */
+    private static final class PendingPrediction {
+        private final BiddingFilter filter;
+        private final float[] features;
+        private final long enqueuedAt = System.nanoTime();
+        private final Thread caller = Thread.currentThread();
+        private double likelihood = -1;
+        private volatile boolean done;
+
+        private PendingPrediction(BiddingFilter filter, float[] features) {
+            this.filter = filter;
+            this.features = features;
+        }
+
+        private void complete(double likelihood) {
+            this.likelihood = likelihood;
+            this.done = true;
+            LockSupport.unpark(caller);
+        }
+
+        /**
+         * @param deadline System.nanoTime() after which the caller stops waiting
+         * @return true when the prediction completed before the deadline
+         */
+        private boolean await(long deadline) throws InterruptedException {
+            while (!done) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("interrupted while waiting for the batch prediction");
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.util.Objects;
+
+/**
+ * Location and version of the artifacts making a model bundle, the MLeap pipeline bundle and its schema
+ * or the precompiled encoder artifact replacing them, and the filtering model.
+ * Two instances are equal when the same objects are found at the same locations,
+ * a retrained model published at the same keys changes the versions.
+ */
+public final class ModelArtifacts {
+
+    private final String transformationModelUri;
+    private final String transformationModelSchemaUri;
+    private final String filteringModelUri;
+    private final String transformationModelVersion;
+    private final String transformationModelSchemaVersion;
+    private final String filteringModelVersion;
+    private final String encoderArtifactUri;
+    private final String encoderArtifactVersion;
+
+    public ModelArtifacts(String transformationModelUri, String transformationModelVersion,
+                          String transformationModelSchemaUri, String transformationModelSchemaVersion,
+                          String filteringModelUri, String filteringModelVersion) {
+        this(transformationModelUri, transformationModelVersion, transformationModelSchemaUri, transformationModelSchemaVersion,
+                filteringModelUri, filteringModelVersion, "", "");
+    }
+
+    /**
+     * @param encoderArtifactUri the precompiled encoder served instead of the MLeap pipeline, empty when there is none
+     */
+    public ModelArtifacts(String transformationModelUri, String transformationModelVersion,
+                          String transformationModelSchemaUri, String transformationModelSchemaVersion,
+                          String filteringModelUri, String filteringModelVersion,
+                          String encoderArtifactUri, String encoderArtifactVersion) {
+        this.transformationModelUri = transformationModelUri;
+        this.transformationModelVersion = transformationModelVersion;
+        this.transformationModelSchemaUri = transformationModelSchemaUri;
+        this.transformationModelSchemaVersion = transformationModelSchemaVersion;
+        this.filteringModelUri = filteringModelUri;
+        this.filteringModelVersion = filteringModelVersion;
+        this.encoderArtifactUri = encoderArtifactUri;
+        this.encoderArtifactVersion = encoderArtifactVersion;
+    }
+
+    public String getTransformationModelUri() {
+        return transformationModelUri;
+    }
+
+    public String getTransformationModelSchemaUri() {
+        return transformationModelSchemaUri;
+    }
+
+    public String getFilteringModelUri() {
+        return filteringModelUri;
+    }
+
+    public String getTransformationModelVersion() {
+        return transformationModelVersion;
+    }
+
+    public String getTransformationModelSchemaVersion() {
+        return transformationModelSchemaVersion;
+    }
+
+    public String getFilteringModelVersion() {
+        return filteringModelVersion;
+    }
+
+    public String getEncoderArtifactUri() {
+        return encoderArtifactUri;
+    }
+
+    public String getEncoderArtifactVersion() {
+        return encoderArtifactVersion;
+    }
+
+    /**
+     * @return true when the requests are encoded by the precompiled encoder artifact, without MLeap
+     */
+    public boolean hasEncoderArtifact() {
+        return !encoderArtifactUri.isEmpty();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ModelArtifacts)) {
+            return false;
+        }
+        ModelArtifacts that = (ModelArtifacts) o;
+        return Objects.equals(transformationModelUri, that.transformationModelUri)
+                && Objects.equals(transformationModelSchemaUri, that.transformationModelSchemaUri)
+                && Objects.equals(filteringModelUri, that.filteringModelUri)
+                && Objects.equals(transformationModelVersion, that.transformationModelVersion)
+                && Objects.equals(transformationModelSchemaVersion, that.transformationModelSchemaVersion)
+                && Objects.equals(filteringModelVersion, that.filteringModelVersion)
+                && Objects.equals(encoderArtifactUri, that.encoderArtifactUri)
+                && Objects.equals(encoderArtifactVersion, that.encoderArtifactVersion);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(transformationModelUri, transformationModelSchemaUri, filteringModelUri,
+                transformationModelVersion, transformationModelSchemaVersion, filteringModelVersion,
+                encoderArtifactUri, encoderArtifactVersion);
+    }
+
+    @Override
+    public String toString() {
+        if (hasEncoderArtifact()) {
+            return "encoder artifact " + encoderArtifactUri + " (" + encoderArtifactVersion + ")"
+                    + ", filtering model " + filteringModelUri + " (" + filteringModelVersion + ")";
+        }
+        return "transformation model " + transformationModelUri + " (" + transformationModelVersion + ")"
+                + ", schema " + transformationModelSchemaUri + " (" + transformationModelSchemaVersion + ")"
+                + ", filtering model " + filteringModelUri + " (" + filteringModelVersion + ")";
+    }
+}
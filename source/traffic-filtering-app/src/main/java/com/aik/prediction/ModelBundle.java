@@ -0,0 +1,123 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import com.aik.filterapi.BidRequest;
+
+import java.util.Arrays;
+
+/**
+ * Feature transformation and filtering model trained together and served as one unit.
+ * A bundle is never modified once published, a reload publishes a new bundle instead,
+ * so a request reading the bundle once always uses a matching encoder and booster.
+ */
+public final class ModelBundle {
+
+    private static final double MIN_LIKELIHOOD = 0;
+    private static final double MAX_LIKELIHOOD = 1;
+    private static final int NB_VALIDATION_REQUESTS = 8;
+    // the index columns in feature vector order, from features[2]
+    private static final String[] INDEX_COLUMNS = {FeatureEncoder.ADVERTISER_COLUMN, FeatureEncoder.DOMAIN_COLUMN,
+            FeatureEncoder.REGION_COLUMN, FeatureEncoder.CITY_COLUMN};
+    private static final int FIRST_INDEX_FEATURE = 2;
+
+    private final ModelArtifacts artifacts;
+    private final FeatureTransformer transform;
+    private final BiddingFilter filter;
+    private final ScoreCache scoreCache;
+
+    public ModelBundle(ModelArtifacts artifacts, FeatureTransformer transform, BiddingFilter filter) {
+        this(artifacts, transform, filter, null);
+    }
+
+    /**
+     * @param scoreCache the likelihoods computed by this filter, null to score every request
+     */
+    public ModelBundle(ModelArtifacts artifacts, FeatureTransformer transform, BiddingFilter filter, ScoreCache scoreCache) {
+        this.artifacts = artifacts;
+        this.transform = transform;
+        this.filter = filter;
+        this.scoreCache = scoreCache;
+    }
+
+    public ModelArtifacts getArtifacts() {
+        return artifacts;
+    }
+
+    public FeatureTransformer getTransform() {
+        return transform;
+    }
+
+    public BiddingFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @return the cache of the likelihoods scored by this bundle, null when caching is disabled
+     */
+    public ScoreCache getScoreCache() {
+        return scoreCache;
+    }
+
+    /**
+     * check the bundle can serve before publishing it: bid requests made of known labels are encoded
+     * to the index of their labels and scored to a likelihood, and so is a row of missing features
+     * @throws IllegalStateException when the encoder or the filtering model did not load or is inconsistent
+     */
+    public void validate() {
+        float[] features = new float[FeatureEncoder.NB_FEATURES];
+        Arrays.fill(features, Float.NaN);
+        checkLikelihood(filter.filter(features), "a row of missing features");
+
+        String[][] labels = new String[INDEX_COLUMNS.length][];
+        for (int column = 0; column < INDEX_COLUMNS.length; column++) {
+            labels[column] = transform.labels(INDEX_COLUMNS[column]);
+            if (labels[column].length == 0) {
+                throw new IllegalStateException("feature transformation " + describeTransform()
+                        + " has no label for " + INDEX_COLUMNS[column]);
+            }
+        }
+        for (int i = 0; i < NB_VALIDATION_REQUESTS; i++) {
+            BidRequest request = new BidRequest();
+            request.bidId = "validation-" + i;
+            request.dayOfWeek = i % 7;
+            request.hour = String.format("%02d", i);
+            request.advertiserId = labels[0][i % labels[0].length];
+            request.domainId = labels[1][i % labels[1].length];
+            request.regionId = labels[2][i % labels[2].length];
+            request.cityId = labels[3][i % labels[3].length];
+            request.userAgent = "";
+            request.setDeviceTypeId(1);
+            transform.transformInto(request, features);
+            for (int column = 0; column < INDEX_COLUMNS.length; column++) {
+                int expected = i % labels[column].length;
+                float actual = features[FIRST_INDEX_FEATURE + column];
+                if (actual != expected) {
+                    throw new IllegalStateException("feature transformation " + describeTransform() + " encodes label "
+                            + labels[column][expected] + " of " + INDEX_COLUMNS[column] + " to " + actual
+                            + " instead of " + expected);
+                }
+            }
+            checkLikelihood(filter.filter(features), "validation request " + i);
+        }
+    }
+
+    /**
+     * the bundle no longer serves new requests, its filter is freed once the requests in flight complete
+     */
+    public void retire() {
+        filter.retire();
+    }
+
+    private void checkLikelihood(double likelihood, String row) {
+        if (!(likelihood >= MIN_LIKELIHOOD && likelihood <= MAX_LIKELIHOOD)) {
+            throw new IllegalStateException("filtering model " + artifacts.getFilteringModelUri()
+                    + " returned " + likelihood + " for " + row);
+        }
+    }
+
+    private String describeTransform() {
+        return artifacts.hasEncoderArtifact() ? artifacts.getEncoderArtifactUri() : artifacts.getTransformationModelUri();
+    }
+}
@@ -0,0 +1,113 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control on the time the requests wait for a worker thread, in the CoDel style.
+ * The queue is overloaded when even the shortest wait of the last interval stayed above the target: a burst
+ * which drains quickly is absorbed, a standing queue is not. While overloaded, the requests which waited
+ * more than twice the target are shed, they are answered with a default likelihood without being scored,
+ * so the admitted requests keep a bounded latency and the queue drains instead of slowing every request.
+ */
+public class QueueDelayAdmission {
+
+    private final long targetNanos;
+    private final long intervalNanos;
+    private final AtomicLong intervalEnd;
+    private final AtomicLong minDelay = new AtomicLong();
+    private volatile boolean overloaded;
+    // wait of the request being run by the current worker thread, 0 outside of the worker pool
+    private final ThreadLocal<long[]> currentDelay = ThreadLocal.withInitial(() -> new long[1]);
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * @param targetMicros the acceptable wait for a worker thread
+     * @param intervalMicros the window over which the shortest wait must stay above the target to shed
+     */
+    public QueueDelayAdmission(long targetMicros, long intervalMicros) {
+        this.targetNanos = TimeUnit.MICROSECONDS.toNanos(targetMicros);
+        this.intervalNanos = TimeUnit.MICROSECONDS.toNanos(intervalMicros);
+        this.intervalEnd = new AtomicLong(System.nanoTime() + intervalNanos);
+    }
+
+    /**
+     * decide on the request run by the current thread, once per request
+     * @return false when the request must be answered without being scored
+     */
+    public boolean admit() {
+        long[] delay = currentDelay.get();
+        long waited = delay[0];
+        delay[0] = 0;
+        long now = System.nanoTime();
+        long end = intervalEnd.get();
+        if (now - end > 0 && intervalEnd.compareAndSet(end, now + intervalNanos)) {
+            // one thread closes the interval, the shortest wait seen decides the state of the next one
+            overloaded = Math.min(minDelay.getAndSet(waited), waited) > targetNanos;
+        } else {
+            minDelay.accumulateAndGet(waited, Math::min);
+        }
+        if (overloaded && waited > 2 * targetNanos) {
+            shed.increment();
+            return false;
+        }
+        admitted.increment();
+        return true;
+    }
+
+    /**
+     * @return the number of requests shed since the previous call
+     */
+    public long drainShed() {
+        return shed.sumThenReset();
+    }
+
+    /**
+     * @return the number of requests admitted since the previous call
+     */
+    public long drainAdmitted() {
+        return admitted.sumThenReset();
+    }
+
+    /**
+     * build a fixed pool of worker threads recording how long every task waited in its queue
+     * @param threads the number of worker threads
+     * @param queue the pending tasks
+     * @param threadFactory creates the worker threads
+     */
+    public ThreadPoolExecutor executor(int threads, BlockingQueue<Runnable> queue, ThreadFactory threadFactory) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, threadFactory) {
+            @Override
+            public void execute(Runnable command) {
+                super.execute(new Queued(command, System.nanoTime()));
+            }
+        };
+    }
+
+    /**
+     * task stamped with the time it was queued
+     */
+    private final class Queued implements Runnable {
+        private final Runnable task;
+        private final long queuedAt;
+
+        private Queued(Runnable task, long queuedAt) {
+            this.task = task;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public void run() {
+            currentDelay.get()[0] = System.nanoTime() - queuedAt;
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Likelihood to bid of the recent feature vectors, so the hot combinations of the traffic skip the prediction.
+ * The vector is packed into one long key, each feature on a fixed number of bits, and the vectors not fitting
+ * the packing are never cached. The cache is a 4 way set associative table of primitive slots read without lock,
+ * each slot guarded by a stamp which is odd while a writer updates it. A new vector replaces the least frequent
+ * vector of its set only when it was seen more often, the frequencies are kept by a count-min sketch of small
+ * counters halved periodically, so a burst of one-off vectors does not evict the hot ones.
+ * A cache belongs to one model bundle, a reloaded model starts with an empty cache.
+ */
+public class ScoreCache {
+
+    /**
+     * returned by key for the feature vectors which can not be cached
+     */
+    public static final long NOT_CACHEABLE = -1;
+    // bits of dow, hour, advertiser, domain, region, city and device type, 63 bits so a key is never negative
+    private static final int[] FEATURE_BITS = {4, 5, 9, 20, 10, 11, 4};
+    private static final int WAYS = 4;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MAX_FREQUENCY = 15;
+    private static final long[] SKETCH_SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final AtomicLongArray stamps;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray scores;
+    private final int setMask;
+    // racy counters, a lost increment only makes the admission slightly less accurate
+    private final byte[] sketch;
+    private final int sketchMask;
+    private final int sampleSize;
+    private int sampleCount;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the maximum number of feature vectors kept, rounded up to a power of two
+     */
+    public ScoreCache(int capacity) {
+        int nbSets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS - 1)) << 1;
+        stamps = new AtomicLongArray(nbSets * WAYS);
+        keys = new AtomicLongArray(nbSets * WAYS);
+        scores = new AtomicLongArray(nbSets * WAYS);
+        setMask = nbSets - 1;
+        sketch = new byte[nbSets * WAYS * 2];
+        sketchMask = sketch.length - 1;
+        sampleSize = nbSets * WAYS * 10;
+    }
+
+    /**
+     * @param features the NB_FEATURES values of a request
+     * @return the packed features, NOT_CACHEABLE when a value is not a small positive integer or NaN
+     */
+    public static long key(float[] features) {
+        long key = 0;
+        for (int i = 0; i < FEATURE_BITS.length; i++) {
+            float value = features[i];
+            long field;
+            if (Float.isNaN(value)) {
+                field = 0;
+            } else if (value >= 0 && value < (1 << FEATURE_BITS[i]) - 1 && value == (int) value) {
+                field = (long) value + 1;
+            } else {
+                return NOT_CACHEABLE;
+            }
+            key = key << FEATURE_BITS[i] | field;
+        }
+        return key;
+    }
+
+    /**
+     * @param key a key built by key, not NOT_CACHEABLE
+     * @return the cached likelihood, NaN on a miss
+     */
+    public double get(long key) {
+        recordAccess(key);
+        int first = (CategoryIndex.mix(key) & setMask) * WAYS;
+        for (int slot = first; slot < first + WAYS; slot++) {
+            long stamp = stamps.get(slot);
+            if ((stamp & 1) == 0 && stamp != 0 && keys.get(slot) == key) {
+                long score = scores.get(slot);
+                if (stamps.get(slot) == stamp) {
+                    hits.increment();
+                    return Double.longBitsToDouble(score);
+                }
+            }
+        }
+        misses.increment();
+        return Double.NaN;
+    }
+
+    /**
+     * keep the likelihood of a key missed by get, when it is seen more often than the vector it would evict
+     */
+    public void put(long key, double likelihood) {
+        int first = (CategoryIndex.mix(key) & setMask) * WAYS;
+        int victim = -1;
+        int victimFrequency = Integer.MAX_VALUE;
+        for (int slot = first; slot < first + WAYS; slot++) {
+            long stamp = stamps.get(slot);
+            if (stamp == 0) {
+                victim = slot;
+                victimFrequency = -1;
+                break;
+            }
+            int frequency = frequency(keys.get(slot));
+            if (frequency < victimFrequency) {
+                victim = slot;
+                victimFrequency = frequency;
+            }
+        }
+        if (victimFrequency >= 0 && frequency(key) <= victimFrequency) {
+            return;
+        }
+        long stamp = stamps.get(victim);
+        // another writer holds the slot, dropping this entry is cheaper than waiting
+        if ((stamp & 1) != 0 || !stamps.compareAndSet(victim, stamp, stamp + 1)) {
+            return;
+        }
+        keys.set(victim, key);
+        scores.set(victim, Double.doubleToRawLongBits(likelihood));
+        stamps.set(victim, stamp + 2);
+    }
+
+    /**
+     * drop every entry, the frequencies and the hit and miss counts, only while no request is served
+     */
+    public void clear() {
+        for (int slot = 0; slot < stamps.length(); slot++) {
+            stamps.set(slot, 0);
+            keys.set(slot, 0);
+            scores.set(slot, 0);
+        }
+        Arrays.fill(sketch, (byte) 0);
+        sampleCount = 0;
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * @return the number of hits since the previous call
+     */
+    public long drainHits() {
+        return hits.sumThenReset();
+    }
+
+    /**
+     * @return the number of misses since the previous call
+     */
+    public long drainMisses() {
+        return misses.sumThenReset();
+    }
+
+    private void recordAccess(long key) {
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            int counter = sketchIndex(key, i);
+            if (sketch[counter] < MAX_FREQUENCY) {
+                sketch[counter]++;
+            }
+        }
+        // the sample counter is shared without synchronization, sampling one access in 16 keeps its line quiet
+        if ((ThreadLocalRandom.current().nextInt() & 15) == 0 && ++sampleCount * 16 >= sampleSize) {
+            sampleCount = 0;
+            age();
+        }
+    }
+
+    /**
+     * halve every counter, the old frequencies fade so a vector which stopped being hot can be evicted
+     */
+    private void age() {
+        for (int i = 0; i < sketch.length; i++) {
+            sketch[i] = (byte) (sketch[i] >> 1);
+        }
+    }
+
+    int frequency(long key) {
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < SKETCH_DEPTH; i++) {
+            frequency = Math.min(frequency, sketch[sketchIndex(key, i)]);
+        }
+        return frequency;
+    }
+
+    private int sketchIndex(long key, int row) {
+        return CategoryIndex.mix(key ^ SKETCH_SEEDS[row]) & sketchMask;
+    }
+}
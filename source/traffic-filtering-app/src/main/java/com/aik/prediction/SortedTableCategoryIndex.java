@@ -0,0 +1,112 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Labels of an encoder artifact, a table of UTF-8 strings sorted by code point read in place from the mapped file.
+ * A lookup is a binary search comparing the label with the encoded bytes, nothing is decoded nor allocated.
+ */
+public class SortedTableCategoryIndex extends CategoryIndex {
+
+    private final ByteBuffer offsets;
+    private final ByteBuffer indexes;
+    private final ByteBuffer blob;
+
+    /**
+     * @param nbLabels the number of labels of the table
+     * @param offsets nbLabels + 1 int offsets of the sorted labels in the blob
+     * @param indexes nbLabels int model indexes of the sorted labels
+     * @param blob the UTF-8 bytes of the sorted labels
+     */
+    SortedTableCategoryIndex(int nbLabels, boolean keepInvalid, ByteBuffer offsets, ByteBuffer indexes, ByteBuffer blob) {
+        super(nbLabels, keepInvalid);
+        this.offsets = offsets;
+        this.indexes = indexes;
+        this.blob = blob;
+    }
+
+    @Override
+    protected int lookup(String label) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareAt(label, middle);
+            if (comparison == 0) {
+                return indexAt(middle);
+            } else if (comparison < 0) {
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String[] labels() {
+        String[] labels = new String[size()];
+        for (int i = 0; i < size(); i++) {
+            int start = offsets.getInt(i * Integer.BYTES);
+            byte[] bytes = new byte[offsets.getInt((i + 1) * Integer.BYTES) - start];
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = blob.get(start + j);
+            }
+            labels[indexes.getInt(i * Integer.BYTES)] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return labels;
+    }
+
+    /**
+     * compare a label with the label at a position of the sorted table
+     */
+    int compareAt(String label, int position) {
+        return compare(label, blob, offsets.getInt(position * Integer.BYTES), offsets.getInt((position + 1) * Integer.BYTES));
+    }
+
+    /**
+     * @return the model index of the label at a position of the sorted table
+     */
+    int indexAt(int position) {
+        return indexes.getInt(position * Integer.BYTES);
+    }
+
+    /**
+     * compare a label with UTF-8 bytes code point by code point, the order of the sorted table
+     * @return a negative number, 0 or a positive number when the label is before, equal or after the bytes
+     */
+    static int compare(String label, ByteBuffer bytes, int start, int end) {
+        int i = 0;
+        int position = start;
+        while (i < label.length() && position < end) {
+            int codePoint = label.codePointAt(i);
+            int lead = bytes.get(position) & 0xFF;
+            int decoded;
+            int length;
+            if (lead < 0x80) {
+                decoded = lead;
+                length = 1;
+            } else if (lead < 0xE0) {
+                decoded = (lead & 0x1F) << 6 | (bytes.get(position + 1) & 0x3F);
+                length = 2;
+            } else if (lead < 0xF0) {
+                decoded = (lead & 0x0F) << 12 | (bytes.get(position + 1) & 0x3F) << 6 | (bytes.get(position + 2) & 0x3F);
+                length = 3;
+            } else {
+                decoded = (lead & 0x07) << 18 | (bytes.get(position + 1) & 0x3F) << 12
+                        | (bytes.get(position + 2) & 0x3F) << 6 | (bytes.get(position + 3) & 0x3F);
+                length = 4;
+            }
+            if (codePoint != decoded) {
+                return Integer.compare(codePoint, decoded);
+            }
+            i += Character.charCount(codePoint);
+            position += length;
+        }
+        return Boolean.compare(i < label.length(), position < end);
+    }
+}
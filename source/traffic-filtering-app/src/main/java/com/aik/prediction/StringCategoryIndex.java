@@ -0,0 +1,66 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table keyed by strings, for free form labels such as the Domain hashes.
+ * The string hash codes are kept next to the keys so a miss never compares characters.
+ */
+public class StringCategoryIndex extends CategoryIndex {
+
+    private final String[] keys;
+    private final int[] hashes;
+    private final int[] values;
+    private final int mask;
+
+    StringCategoryIndex(String[] labels, boolean keepInvalid) {
+        super(labels.length, keepInvalid);
+        int capacity = tableSize(labels.length);
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, -1);
+        mask = capacity - 1;
+        for (int index = 0; index < labels.length; index++) {
+            String key = labels[index];
+            int hash = key.hashCode();
+            int slot = mix(hash) & mask;
+            while (values[slot] >= 0 && !(hashes[slot] == hash && keys[slot].equals(key))) {
+                slot = (slot + 1) & mask;
+            }
+            if (values[slot] < 0) {
+                keys[slot] = key;
+                hashes[slot] = hash;
+                values[slot] = index;
+            }
+        }
+    }
+
+    @Override
+    protected int lookup(String label) {
+        int hash = label.hashCode();
+        int slot = mix(hash) & mask;
+        int index;
+        while ((index = values[slot]) >= 0) {
+            if (hashes[slot] == hash && keys[slot].equals(label)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public String[] labels() {
+        String[] labels = new String[size()];
+        for (int slot = 0; slot < values.length; slot++) {
+            if (values[slot] >= 0) {
+                labels[values[slot]] = keys[slot];
+            }
+        }
+        return labels;
+    }
+}
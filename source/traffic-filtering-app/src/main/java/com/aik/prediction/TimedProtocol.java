@@ -0,0 +1,75 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolDecorator;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.transport.TTransport;
+
+/**
+ * Protocol recording the time spent decoding the arguments of every call and encoding its result.
+ * The read is timed once the message header is decoded, so the wait for the next request on an idle
+ * connection is not counted, and the write stops before the transport is flushed to the socket.
+ */
+public class TimedProtocol extends TProtocolDecorator {
+
+    private final LatencyRecorder readLatency;
+    private final LatencyRecorder writeLatency;
+    private long readStart;
+    private long writeStart;
+
+    public TimedProtocol(TProtocol protocol, LatencyRecorder readLatency, LatencyRecorder writeLatency) {
+        super(protocol);
+        this.readLatency = readLatency;
+        this.writeLatency = writeLatency;
+    }
+
+    @Override
+    public TMessage readMessageBegin() throws TException {
+        TMessage message = super.readMessageBegin();
+        readStart = System.nanoTime();
+        return message;
+    }
+
+    @Override
+    public void readMessageEnd() throws TException {
+        super.readMessageEnd();
+        readLatency.recordSince(readStart);
+    }
+
+    @Override
+    public void writeMessageBegin(TMessage message) throws TException {
+        writeStart = System.nanoTime();
+        super.writeMessageBegin(message);
+    }
+
+    @Override
+    public void writeMessageEnd() throws TException {
+        super.writeMessageEnd();
+        writeLatency.recordSince(writeStart);
+    }
+
+    /**
+     * wrap the protocols built by another factory, every connection gets its own timed protocol
+     */
+    public static class Factory implements TProtocolFactory {
+        private final TProtocolFactory factory;
+        private final LatencyRecorder readLatency;
+        private final LatencyRecorder writeLatency;
+
+        public Factory(TProtocolFactory factory, LatencyRecorder readLatency, LatencyRecorder writeLatency) {
+            this.factory = factory;
+            this.readLatency = readLatency;
+            this.writeLatency = writeLatency;
+        }
+
+        @Override
+        public TProtocol getProtocol(TTransport transport) {
+            return new TimedProtocol(factory.getProtocol(transport), readLatency, writeLatency);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import ml.dmlc.xgboost4j.java.Booster;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.XGBoostError;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pure Java evaluation of an XGBoost tree ensemble.
+ * The trees of the booster are flattened once into primitive arrays and scored
+ * directly on a float[] without any JNI call nor allocation.
+ */
+public class TreeEnsemble {
+
+    private static final Logger logger = LogManager.getLogger(TreeEnsemble.class.getName());
+    private static final int LEAF = -1;
+
+    // node arrays, the nodes of tree t start at treeRoots[t]
+    private final int[] treeRoots;
+    private final int[] splitFeature;
+    private final float[] splitCondition;
+    private final int[] yesChild;
+    private final int[] noChild;
+    private final int[] missingChild;
+    private final float[] leafValue;
+    private final float baseMargin;
+    private final boolean logistic;
+
+    TreeEnsemble(int[] treeRoots, int[] splitFeature, float[] splitCondition, int[] yesChild, int[] noChild,
+                 int[] missingChild, float[] leafValue, float baseMargin, boolean logistic) {
+        this.treeRoots = treeRoots;
+        this.splitFeature = splitFeature;
+        this.splitCondition = splitCondition;
+        this.yesChild = yesChild;
+        this.noChild = noChild;
+        this.missingChild = missingChild;
+        this.leafValue = leafValue;
+        this.baseMargin = baseMargin;
+        this.logistic = logistic;
+    }
+
+    /**
+     * flatten the trees of a loaded booster whose features are in FeatureEncoder order
+     * @see #fromBooster(Booster, String[])
+     */
+    public static TreeEnsemble fromBooster(Booster booster) throws XGBoostError {
+        return fromBooster(booster, FeatureEncoder.FEATURE_NAMES);
+    }
+
+    /**
+     * flatten the trees of a loaded booster, the base margin and the output transformation
+     * are calibrated against the booster itself so both engines return the same scores
+     * @param booster the booster loaded from the filtering model
+     * @param featureNames the names the model may split on, in feature vector order
+     * @return the ensemble evaluating the same trees
+     * @throws IllegalArgumentException when a split is on a feature which is neither f&lt;index&gt; nor a known name
+     */
+    public static TreeEnsemble fromBooster(Booster booster, String[] featureNames) throws XGBoostError {
+        String[] dump = booster.getModelDump((String) null, false, "json");
+        JSONParser parser = new JSONParser();
+        List<JSONObject> nodes = new ArrayList<>();
+        int[] treeRoots = new int[dump.length];
+        int[] treeSizes = new int[dump.length];
+        List<JSONObject[]> trees = new ArrayList<>();
+        int nbNodes = 0;
+        try {
+            for (int t = 0; t < dump.length; t++) {
+                nodes.clear();
+                collectNodes((JSONObject) parser.parse(dump[t]), nodes);
+                int size = 0;
+                for (JSONObject node : nodes) {
+                    size = Math.max(size, toInt(node.get("nodeid")) + 1);
+                }
+                JSONObject[] tree = new JSONObject[size];
+                for (JSONObject node : nodes) {
+                    tree[toInt(node.get("nodeid"))] = node;
+                }
+                trees.add(tree);
+                treeRoots[t] = nbNodes;
+                treeSizes[t] = size;
+                nbNodes += size;
+            }
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("unable to parse the dump of the filtering model", e);
+        }
+
+        int[] splitFeature = new int[nbNodes];
+        float[] splitCondition = new float[nbNodes];
+        int[] yesChild = new int[nbNodes];
+        int[] noChild = new int[nbNodes];
+        int[] missingChild = new int[nbNodes];
+        float[] leafValue = new float[nbNodes];
+        Arrays.fill(splitFeature, LEAF);
+        for (int t = 0; t < trees.size(); t++) {
+            int offset = treeRoots[t];
+            JSONObject[] tree = trees.get(t);
+            for (int id = 0; id < treeSizes[t]; id++) {
+                JSONObject node = tree[id];
+                // ids of pruned nodes are never reached, they stay leaves with a zero value
+                if (node == null) {
+                    continue;
+                }
+                int index = offset + id;
+                if (node.containsKey("leaf")) {
+                    leafValue[index] = ((Number) node.get("leaf")).floatValue();
+                } else {
+                    splitFeature[index] = featureIndex((String) node.get("split"), featureNames);
+                    splitCondition[index] = ((Number) node.get("split_condition")).floatValue();
+                    yesChild[index] = offset + toInt(node.get("yes"));
+                    noChild[index] = offset + toInt(node.get("no"));
+                    missingChild[index] = offset + toInt(node.get("missing"));
+                }
+            }
+        }
+
+        TreeEnsemble uncalibrated = new TreeEnsemble(treeRoots, splitFeature, splitCondition, yesChild, noChild,
+                missingChild, leafValue, 0f, false);
+        // a row of missing values follows the default branches, the booster margin minus
+        // the sum of the leaves reached is the base margin of the model
+        float[] missingRow = {Float.NaN};
+        DMatrix probe = new DMatrix(missingRow, 1, 1, Float.NaN);
+        float margin = booster.predict(probe, true, 0)[0][0];
+        float score = booster.predict(probe)[0][0];
+        probe.dispose();
+        float baseMargin = margin - uncalibrated.margin(missingRow);
+        boolean logistic = Math.abs(score - sigmoid(margin)) < Math.abs(score - margin);
+        logger.info("tree ensemble with " + dump.length + " trees, " + nbNodes + " nodes, base margin " + baseMargin
+                + (logistic ? ", logistic output" : ", raw output"));
+        return new TreeEnsemble(treeRoots, splitFeature, splitCondition, yesChild, noChild,
+                missingChild, leafValue, baseMargin, logistic);
+    }
+
+    /**
+     * compute the prediction of the ensemble, features beyond the end of the array are missing
+     * @param features the feature vector, NaN for a missing value
+     * @return the same score as Booster.predict
+     */
+    public float predict(float[] features) {
+        float margin = margin(features);
+        return logistic ? sigmoid(margin) : margin;
+    }
+
+    private float margin(float[] features) {
+        // accumulated in float from the base margin, in tree order, like the xgboost cpu predictor
+        float sum = baseMargin;
+        for (int root : treeRoots) {
+            int node = root;
+            int feature;
+            while ((feature = splitFeature[node]) != LEAF) {
+                float value = feature < features.length ? features[feature] : Float.NaN;
+                if (Float.isNaN(value)) {
+                    node = missingChild[node];
+                } else {
+                    node = value < splitCondition[node] ? yesChild[node] : noChild[node];
+                }
+            }
+            sum += leafValue[node];
+        }
+        return sum;
+    }
+
+    private static float sigmoid(float margin) {
+        return 1.0f / (1.0f + (float) Math.exp(-margin));
+    }
+
+    /**
+     * resolve the feature of a split, f3 for a model trained without feature names or the name of the column
+     * @param split the split attribute of a node of the dump
+     * @param featureNames the known names in feature vector order
+     * @return the position of the feature in the vector
+     */
+    static int featureIndex(String split, String[] featureNames) {
+        if (split == null) {
+            throw new IllegalArgumentException("split node without a feature in the dump of the filtering model");
+        }
+        for (int i = 0; i < featureNames.length; i++) {
+            if (featureNames[i].equals(split)) {
+                return i;
+            }
+        }
+        if (split.length() > 1 && split.length() < 10 && split.charAt(0) == 'f') {
+            int index = 0;
+            for (int i = 1; i < split.length() && index >= 0; i++) {
+                char c = split.charAt(i);
+                index = c >= '0' && c <= '9' ? index * 10 + (c - '0') : -1;
+            }
+            if (index >= 0) {
+                return index;
+            }
+        }
+        throw new IllegalArgumentException("the filtering model splits on feature " + split
+                + ", expected f<index> or one of " + Arrays.toString(featureNames));
+    }
+
+    private static void collectNodes(JSONObject node, List<JSONObject> nodes) {
+        nodes.add(node);
+        JSONArray children = (JSONArray) node.get("children");
+        if (children != null) {
+            for (Object child : children) {
+                collectNodes((JSONObject) child, nodes);
+            }
+        }
+    }
+
+    private static int toInt(Object value) {
+        return ((Number) value).intValue();
+    }
+}
@@ -0,0 +1,17 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+/**
+ * A bid request holds a label the StringIndexer of its column was not fitted on, or no label at all,
+ * and the indexer was not fitted with handleInvalid=keep. MLeap rejects such a request and so does
+ * the compiled encoder, the handler then answers it with the default likelihood.
+ * Thrown without a stack trace, it is part of the normal flow of the requests.
+ */
+public class UnseenLabelException extends RuntimeException {
+
+    public UnseenLabelException(String column, String label) {
+        super("unseen label " + label + " in column " + column, null, false, false);
+    }
+}
@@ -0,0 +1,123 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import com.aik.filterapi.BidRequest;
+import com.aik.filterapi.BidRequestFilter;
+import com.aik.perfclient.BidRequestLoader;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.thrift.TException;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run bid requests through the handler before the server opens its socket, so the transformation,
+ * the JNI calls and the handler itself are compiled by the JIT when the first real bid arrives.
+ * The requests are read from a recorded file when one is configured, otherwise they are generated
+ * from the labels known by the model so they exercise the same lookups as the real traffic.
+ * The handler is flagged for the warm-up, its requests are neither sent to StatsD nor reported with the real traffic.
+ */
+public class WarmUp {
+
+    private static final Logger logger = LogManager.getLogger(WarmUp.class.getName());
+    private static final int NB_WINDOWS = 10;
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/96.0.4664.110 Safari/537.36",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 15_2 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/15.2 Mobile/15E148 Safari/604.1",
+            "Mozilla/5.0 (Linux; Android 12; SM-G991B) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/96.0.4664.104 Mobile Safari/537.36"
+    };
+
+    private final BidRequestFilter.Iface handler;
+    private final int iterations;
+
+    /**
+     * @param handler the handler to warm up, called exactly as the server would
+     * @param iterations the number of bid requests to run, 0 to skip the warm-up
+     */
+    public WarmUp(BidRequestFilter.Iface handler, int iterations) {
+        this.handler = handler;
+        this.iterations = iterations;
+    }
+
+    /**
+     * run the warm-up, logging the latency of each tenth of the requests to show how it converged
+     * @param requests the bid requests to replay in a loop
+     */
+    public void run(List<BidRequest> requests) {
+        if (iterations <= 0 || requests.isEmpty()) {
+            logger.warn("warm-up skipped");
+            return;
+        }
+        LatencyRecorder latency = new LatencyRecorder("warm-up");
+        int windowSize = Math.max(1, iterations / NB_WINDOWS);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            long requestStart = System.nanoTime();
+            try {
+                handler.filter(requests.get(i % requests.size()));
+            } catch (TException e) {
+                logger.catching(e);
+            }
+            latency.recordSince(requestStart);
+            if ((i + 1) % windowSize == 0 || i + 1 == iterations) {
+                LatencyHistogram.Snapshot window = latency.snapshot();
+                logger.warn("warm-up requests {} to {} latency (us) p50: {} p99: {}", i + 1 - window.getTotalCount(), i + 1,
+                        TimeUnit.NANOSECONDS.toMicros(window.valueAtPercentile(50)),
+                        TimeUnit.NANOSECONDS.toMicros(window.valueAtPercentile(99)));
+            }
+        }
+        logger.warn("warm-up of {} requests done in {} ms", iterations,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * generate bid requests with the labels known by the transformation of the model
+     * @param transform the transformation serving the requests
+     * @param count the number of distinct requests
+     */
+    public static List<BidRequest> syntheticRequests(FeatureTransformer transform, int count) {
+        Random random = new Random(count);
+        String[] advertisers = transform.labels(FeatureEncoder.ADVERTISER_COLUMN);
+        String[] domains = transform.labels(FeatureEncoder.DOMAIN_COLUMN);
+        String[] regions = transform.labels(FeatureEncoder.REGION_COLUMN);
+        String[] cities = transform.labels(FeatureEncoder.CITY_COLUMN);
+        List<BidRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BidRequest request = new BidRequest();
+            request.bidId = "warm-up-" + i;
+            request.dayOfWeek = random.nextInt(7);
+            request.hour = String.format("%02d", random.nextInt(24));
+            request.advertiserId = pick(advertisers, random);
+            request.domainId = pick(domains, random);
+            request.regionId = pick(regions, random);
+            request.cityId = pick(cities, random);
+            request.biddingPrice = 200 + random.nextInt(200);
+            request.payingPrice = random.nextInt(300);
+            // the device type is left to the handler, so the warm-up also runs the user agent classification
+            request.userAgent = USER_AGENTS[random.nextInt(USER_AGENTS.length)];
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    /**
+     * read recorded bid requests, one json object per line in the format of the test dataset,
+     * parsed like the performance client replay dataset, the malformed lines are logged and skipped
+     * @param path the local file holding the requests
+     */
+    public static List<BidRequest> recordedRequests(String path) throws IOException {
+        // the device type is left to the handler, so the warm-up also runs the user agent classification
+        return new BidRequestLoader(null).load(Paths.get(path));
+    }
+
+    private static String pick(String[] labels, Random random) {
+        return labels.length == 0 ? "" : labels[random.nextInt(labels.length)];
+    }
+}
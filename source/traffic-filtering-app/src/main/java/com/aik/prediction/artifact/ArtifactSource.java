@@ -0,0 +1,34 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction.artifact;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * Storage the model artifacts are read from, selected by the scheme of the artifact URI.
+ * Implementations are registered in META-INF/services, an extra source only needs a jar on the classpath.
+ */
+public interface ArtifactSource {
+
+    /**
+     * @return the URI schemes served by this source, s3 or file for example
+     */
+    List<String> schemes();
+
+    /**
+     * read the version of an artifact without reading its content
+     * @param uri the location of the artifact
+     * @return a value changing whenever the artifact is overwritten
+     */
+    String version(URI uri) throws IOException;
+
+    /**
+     * stream the content of an artifact, the caller closes the stream
+     * @param uri the location of the artifact
+     */
+    InputStream open(URI uri) throws IOException;
+}
@@ -0,0 +1,44 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction.artifact;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Registry of the artifact sources found on the classpath, looked up by URI scheme.
+ */
+public final class ArtifactSources {
+
+    private static final Map<String, ArtifactSource> sources = load();
+
+    private ArtifactSources() {
+    }
+
+    /**
+     * @param uri the location of an artifact
+     * @return the source able to read it
+     * @throws IllegalArgumentException when no source serves the scheme of the URI
+     */
+    public static ArtifactSource forUri(URI uri) {
+        String scheme = uri.getScheme() == null ? FileArtifactSource.SCHEME : uri.getScheme().toLowerCase();
+        ArtifactSource source = sources.get(scheme);
+        if (source == null) {
+            throw new IllegalArgumentException("no artifact source for " + uri + ", supported schemes " + sources.keySet());
+        }
+        return source;
+    }
+
+    private static Map<String, ArtifactSource> load() {
+        Map<String, ArtifactSource> sources = new HashMap<>();
+        for (ArtifactSource source : ServiceLoader.load(ArtifactSource.class, ArtifactSources.class.getClassLoader())) {
+            for (String scheme : source.schemes()) {
+                sources.put(scheme, source);
+            }
+        }
+        return sources;
+    }
+}
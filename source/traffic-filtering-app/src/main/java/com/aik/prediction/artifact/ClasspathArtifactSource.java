@@ -0,0 +1,44 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction.artifact;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Artifacts packaged with the application, classpath:models/filtering-model.bin, for hermetic startup benchmarks.
+ */
+public class ClasspathArtifactSource implements ArtifactSource {
+
+    @Override
+    public List<String> schemes() {
+        return Collections.singletonList("classpath");
+    }
+
+    @Override
+    public String version(URI uri) throws IOException {
+        URLConnection connection = resource(uri).openConnection();
+        return connection.getContentLengthLong() + "-" + connection.getLastModified();
+    }
+
+    @Override
+    public InputStream open(URI uri) throws IOException {
+        return resource(uri).openStream();
+    }
+
+    private static URL resource(URI uri) throws FileNotFoundException {
+        String name = uri.getSchemeSpecificPart();
+        URL resource = ClasspathArtifactSource.class.getClassLoader().getResource(name.startsWith("/") ? name.substring(1) : name);
+        if (resource == null) {
+            throw new FileNotFoundException("artifact not found on the classpath " + uri);
+        }
+        return resource;
+    }
+}
@@ -0,0 +1,42 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction.artifact;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Artifacts on the local filesystem, file:///path or a plain path, versioned by their size and modification time.
+ * Serves the models prefetched by a sidecar container and the offline benchmarks.
+ */
+public class FileArtifactSource implements ArtifactSource {
+
+    static final String SCHEME = "file";
+
+    @Override
+    public List<String> schemes() {
+        return Collections.singletonList(SCHEME);
+    }
+
+    @Override
+    public String version(URI uri) throws IOException {
+        Path path = path(uri);
+        return Files.size(path) + "-" + Files.getLastModifiedTime(path).toMillis();
+    }
+
+    @Override
+    public InputStream open(URI uri) throws IOException {
+        return Files.newInputStream(path(uri));
+    }
+
+    private static Path path(URI uri) {
+        return uri.getScheme() == null ? Paths.get(uri.getPath()) : Paths.get(uri);
+    }
+}
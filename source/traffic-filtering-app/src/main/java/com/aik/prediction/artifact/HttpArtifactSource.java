@@ -0,0 +1,71 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction.artifact;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Artifacts served over http or https, by a model registry or a sidecar container.
+ * The version is the ETag of the resource, its Last-Modified date or its length, whichever the server sends first,
+ * and empty when it sends none of them: the artifact is then not cached and is downloaded on every fetch.
+ */
+public class HttpArtifactSource implements ArtifactSource {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+    private static final int HTTP_OK = 200;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
+    @Override
+    public List<String> schemes() {
+        return Arrays.asList("http", "https");
+    }
+
+    @Override
+    public String version(URI uri) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .timeout(TIMEOUT)
+                .build();
+        HttpResponse<Void> response = send(request, HttpResponse.BodyHandlers.discarding());
+        return response.headers().firstValue("ETag")
+                .orElse(response.headers().firstValue("Last-Modified")
+                        .orElse(response.headers().firstValue("Content-Length").orElse("")));
+    }
+
+    @Override
+    public InputStream open(URI uri) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(TIMEOUT)
+                .build();
+        return send(request, HttpResponse.BodyHandlers.ofInputStream()).body();
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> handler) throws IOException {
+        try {
+            HttpResponse<T> response = client.send(request, handler);
+            if (response.statusCode() != HTTP_OK) {
+                if (response.body() instanceof InputStream) {
+                    ((InputStream) response.body()).close();
+                }
+                throw new IOException("artifact " + request.uri() + " returned HTTP " + response.statusCode());
+            }
+            return response;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while reading artifact " + request.uri(), e);
+        }
+    }
+}
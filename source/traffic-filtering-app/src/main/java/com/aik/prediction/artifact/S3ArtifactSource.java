@@ -0,0 +1,79 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction.artifact;
+
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Artifacts stored in S3, s3://bucket/key, versioned by their ETag.
+ * The client is thread safe and keeps its connection pool, it is shared by all the reads.
+ */
+public class S3ArtifactSource implements ArtifactSource {
+
+    private static final Pattern S3_URI = Pattern.compile("^s3://([^/]+)/(.+)$");
+
+    private volatile S3Client s3;
+
+    @Override
+    public List<String> schemes() {
+        return Collections.singletonList("s3");
+    }
+
+    @Override
+    public String version(URI uri) {
+        AbstractMap.SimpleEntry<String,String> s3URIParsed = parseS3Uri(uri.toString());
+        HeadObjectRequest objectRequest = HeadObjectRequest
+                .builder()
+                .key(s3URIParsed.getValue())
+                .bucket(s3URIParsed.getKey())
+                .build();
+        return s3Client().headObject(objectRequest).eTag();
+    }
+
+    @Override
+    public InputStream open(URI uri) {
+        AbstractMap.SimpleEntry<String,String> s3URIParsed = parseS3Uri(uri.toString());
+        GetObjectRequest objectRequest = GetObjectRequest
+                .builder()
+                .key(s3URIParsed.getValue())
+                .bucket(s3URIParsed.getKey())
+                .build();
+        return s3Client().getObject(objectRequest);
+    }
+
+    /**
+     * @param s3URI s3://bucket/key
+     * @return the bucket and the key
+     * @throws IllegalArgumentException when the URI is not an S3 object location
+     */
+    public static AbstractMap.SimpleEntry<String,String> parseS3Uri(String s3URI) {
+        Matcher matcher = S3_URI.matcher(s3URI);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("invalid S3 URI " + s3URI);
+        }
+        return new AbstractMap.SimpleEntry<>(matcher.group(1), matcher.group(2));
+    }
+
+    private S3Client s3Client() {
+        if (s3 == null) {
+            synchronized (this) {
+                if (s3 == null) {
+                    s3 = S3Client.builder()
+                            .build();
+                }
+            }
+        }
+        return s3;
+    }
+}
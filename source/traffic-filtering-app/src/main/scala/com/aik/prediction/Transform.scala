@@ -8,9 +8,13 @@ import com.aik.filterapi._
 import com.github.plokhotnyuk.jsoniter_scala.core._
 import com.github.plokhotnyuk.jsoniter_scala.macros._
 import ml.combust.bundle.BundleFile
+import ml.combust.mleap.core.feature.HandleInvalid
 import ml.combust.mleap.core.types._
 import ml.combust.mleap.runtime.MleapSupport._
 import ml.combust.mleap.runtime.frame.{DefaultLeapFrame, Row}
+import ml.combust.mleap.runtime.transformer.Pipeline
+import ml.combust.mleap.runtime.transformer.feature.StringIndexer
+import org.apache.logging.log4j.{LogManager, Logger}
 import resource.managed
 
 import scala.collection.JavaConverters._
@@ -19,30 +23,192 @@ import scala.io.Source
 //https://github.com/combust/mleap/blob/master/mleap-spark-base/src/main/scala/org/apache/spark/sql/mleap/TypeConverters.scala\n
 
 
+/**
+ * Feature transformation of one pipeline bundle and its schema, immutable once loaded
+ * so a reload builds a new instance instead of mutating the one serving the requests.
+ * @param mleapPipeline the MLeap pipeline loaded from the bundle
+ * @param schema the input schema of the pipeline
+ */
+class Transform(val mleapPipeline: ml.combust.mleap.runtime.frame.Transformer,
+                val schema: ml.combust.mleap.core.types.StructType) extends FeatureTransformer {
+
+  val encoder: FeatureEncoder = Transform.compileEncoder(mleapPipeline).orNull
+  Transform.logger.info(s"native feature encoder compiled: ${encoder != null}")
+
+  /**
+   * Labels known by the StringIndexer producing an index column, used to build realistic synthetic bid requests
+   * @param indexColumn the output column of the indexer, IndexAdvertiserID for example
+   * @return the labels, empty when no indexer produces the column
+   */
+  override def labels(indexColumn: String): Array[String] =
+    Transform.indexers(mleapPipeline).get(indexColumn).map(_.labels).getOrElse(Array.empty[String])
+
+  /**
+   * @param indexColumn the output column of the indexer, IndexAdvertiserID for example
+   * @return true when the indexer puts the unseen labels in an extra bucket (handleInvalid=keep)
+   */
+  def keepInvalid(indexColumn: String): Boolean =
+    Transform.indexers(mleapPipeline).get(indexColumn).exists(_.keepInvalid)
+
+  /**
+   * Encode one bid request into a caller owned buffer, allocation free with the native encoder
+   * @param request the bid request to transform
+   * @param features receives the FeatureEncoder.NB_FEATURES values of the request
+   */
+  override def transformInto(request: BidRequest, features: Array[Float]): Unit = {
+    if (encoder != null) {
+      encoder.encode(request, features)
+    } else {
+      transformBatchInto(java.util.Collections.singletonList(request), features)
+    }
+  }
+
+  /**
+   * Encode a burst of bid requests, through a single multi-row LeapFrame when the pipeline could not be compiled
+   * @param requests the bid requests to transform
+   * @param features receives the feature vectors row-major, FeatureEncoder.NB_FEATURES values per request
+   */
+  override def transformBatchInto(requests: java.util.List[BidRequest], features: Array[Float]): Unit = {
+    if (encoder != null) {
+      encoder.transformBatchInto(requests, features)
+    } else {
+      pipelineTransformBatchInto(requests, features)
+    }
+  }
+
+  /**
+   * Encode a burst of bid requests through the MLeap pipeline, whether or not it was compiled
+   * @param requests the bid requests to transform
+   * @param features receives the feature vectors row-major, FeatureEncoder.NB_FEATURES values per request
+   */
+  def pipelineTransformBatchInto(requests: java.util.List[BidRequest], features: Array[Float]): Unit = {
+    val nbFeatures = FeatureEncoder.NB_FEATURES
+    val bidRequests = requests.asScala
+    val rowRequests = bidRequests.map(request => Row(
+      request.bidId,
+      request.dayOfWeek,
+      request.hour,
+      request.regionId,
+      request.cityId,
+      request.domainId,
+      request.advertiserId,
+      request.biddingPrice,
+      request.payingPrice,
+      request.userAgent
+    ))
+    val frame = DefaultLeapFrame(schema, rowRequests)
+    val predictionLeapFrame = mleapPipeline.transform(frame).get
+    val vectorizedLeapFrame = predictionLeapFrame.select("dow","hour","IndexAdvertiserID","IndexDomain","IndexRegionID","IndexCityID").get.dataset
+    vectorizedLeapFrame.zip(bidRequests).zipWithIndex.foreach { case ((row, request), i) =>
+      val offset = i * nbFeatures
+      row.toList.zipWithIndex.foreach { case (item, column) => features(offset + column) = item.toString.toFloat }
+      features(offset + nbFeatures - 1) = request.deviceTypeId.toFloat
+    }
+  }
+}
+
 object Transform {
 
-  var mleapPipeline: ml.combust.mleap.runtime.frame.Transformer = null
-  var schema: ml.combust.mleap.core.types.StructType = null
+  private val logger: Logger = LogManager.getLogger(classOf[Transform].getName)
+
+  // input field of the bid request read by the encoder for every index column
+  private val encodedColumns = ListMap(
+    FeatureEncoder.ADVERTISER_COLUMN -> "AdvertiserID",
+    FeatureEncoder.DOMAIN_COLUMN -> "Domain",
+    FeatureEncoder.REGION_COLUMN -> "RegionID",
+    FeatureEncoder.CITY_COLUMN -> "CityID")
+
+  /**
+   * One output column of a StringIndexer stage
+   * @param input the column the indexer reads
+   * @param labels the labels in index order
+   * @param keepInvalid true when the unseen labels go to an extra bucket (handleInvalid=keep)
+   */
+  private case class IndexedColumn(input: String, labels: Array[String], keepInvalid: Boolean)
 
-  def loadModel(location: String): Unit = {
+  /**
+   * Load a pipeline bundle and its schema
+   * @param modelLocation the local path of the MLeap bundle zip
+   * @param schemaLocation the local path of the schema json
+   */
+  def load(modelLocation: String, schemaLocation: String): Transform =
+    new Transform(loadModel(modelLocation), loadSchema(schemaLocation))
+
+  /**
+   * Load a pipeline bundle with a schema already read in memory
+   * @param modelLocation the local path of the MLeap bundle zip, MLeap only reads bundles from a filesystem
+   * @param schema the content of the schema json
+   */
+  def load(modelLocation: String, schema: Array[Byte]): Transform =
+    new Transform(loadModel(modelLocation), parseSchema(schema))
+
+  def loadModel(location: String): ml.combust.mleap.runtime.frame.Transformer = {
     println(s"starting loading from location $location")
     // TO DO: test loading artifact from an unzipped folder
     val bundle = (for (bundleFile <- managed(BundleFile(s"jar:file:$location"))) yield {
       bundleFile.loadMleapBundle().get
     }).opt.get
-    mleapPipeline = bundle.root
-    println(mleapPipeline.getClass)
+    println(bundle.root.getClass)
+    bundle.root
   }
 
-  def loadSchema(location: String): Unit = {
+  /**
+   * Compile a pipeline made only of StringIndexer stages into native lookup tables
+   * @param pipeline the MLeap pipeline loaded from the bundle
+   * @return the encoder, or None when the pipeline holds other stages or indexes other fields
+   *         than the encoder reads, and must run through MLeap
+   */
+  def compileEncoder(pipeline: ml.combust.mleap.runtime.frame.Transformer): Option[FeatureEncoder] = {
+    val transformers = stages(pipeline)
+    if (!transformers.forall(_.isInstanceOf[StringIndexer])) {
+      return None
+    }
+    val columns = indexers(pipeline)
+    val mismatched = encodedColumns.filter { case (output, input) => columns.get(output).exists(_.input != input) }
+    if (mismatched.nonEmpty) {
+      logger.warn(s"index columns ${mismatched.keys.mkString(", ")} are not computed from the fields the encoder reads, " +
+        "the pipeline runs through MLeap")
+      return None
+    }
+    val categories = columns.map { case (output, column) => output -> CategoryIndex.of(column.labels, column.keepInvalid) }
+    for {
+      advertiser <- categories.get(FeatureEncoder.ADVERTISER_COLUMN)
+      domain <- categories.get(FeatureEncoder.DOMAIN_COLUMN)
+      region <- categories.get(FeatureEncoder.REGION_COLUMN)
+      city <- categories.get(FeatureEncoder.CITY_COLUMN)
+    } yield new FeatureEncoder(advertiser, domain, region, city)
+  }
+
+  /**
+   * @return the input column, the labels and the handleInvalid=keep flag of every StringIndexer output column
+   */
+  private def indexers(pipeline: ml.combust.mleap.runtime.frame.Transformer): Map[String, IndexedColumn] =
+    stages(pipeline).collect { case indexer: StringIndexer => indexer }.flatMap { indexer =>
+      val keepInvalid = indexer.model.handleInvalid == HandleInvalid.Keep
+      val inputs = indexer.shape.inputs.values.map(_.name).toIndexedSeq
+      indexer.shape.outputs.values.map(_.name).zipWithIndex.map { case (output, i) =>
+        output -> IndexedColumn(inputs(i), indexer.model.labelsArray(i).toArray, keepInvalid)
+      }
+    }.toMap
+
+  private def stages(transformer: ml.combust.mleap.runtime.frame.Transformer): Seq[ml.combust.mleap.runtime.frame.Transformer] = transformer match {
+    case pipeline: Pipeline => pipeline.model.transformers.flatMap(stages)
+    case other => Seq(other)
+  }
+
+  def loadSchema(location: String): ml.combust.mleap.core.types.StructType = {
     println(s"starting loading from location $location")
     val schemaFile = Source.fromFile(location)
     val schemaFileContents = schemaFile.getLines.mkString
     schemaFile.close()
+    parseSchema(schemaFileContents.getBytes("UTF-8"))
+  }
+
+  def parseSchema(schemaFileContents: Array[Byte]): ml.combust.mleap.core.types.StructType = {
     implicit val codec: JsonValueCodec[ListMap[String, String]] = JsonCodecMaker.make[ListMap[String, String]](CodecMakerConfig)
-    val schemaFieldMap = readFromArray(schemaFileContents.getBytes("UTF-8"))
+    val schemaFieldMap = readFromArray(schemaFileContents)
     //Reconstruct MLeap Schema from JSON Map
-    schema = StructType(
+    val schema = StructType(
       schemaFieldMap.toList.map {
         case (f, "DoubleType") => StructField(f, ScalarType.Double)
         case (f, "IntegerType") => StructField(f, ScalarType.Int)
@@ -52,31 +218,6 @@ object Transform {
       }
     ).get
     println(schema)
+    schema
   }
-
-  def transform(request: BidRequest): java.util.List[java.lang.Double] = {
-    val rowRequest = Seq(Row(
-      request.bidId,
-      request.dayOfWeek,
-      request.hour,
-      request.regionId,
-      request.cityId,
-      request.domainId,
-      request.advertiserId,
-      request.biddingPrice,
-      request.payingPrice,
-      request.userAgent
-    ))
-    val frame = DefaultLeapFrame(schema, rowRequest)
-    val predictionLeapFrame = mleapPipeline.transform(frame).get
-    val vectorizedLeapFrame = predictionLeapFrame.select("dow","hour","IndexAdvertiserID","IndexDomain","IndexRegionID","IndexCityID").get.dataset
-    //val vectorizedData: List[java.lang.Double] = vectorizedLeapFrame.apply(0).getTensor(0).toDense.rawValuesIterator.toList
-    val vectorizedData: List[java.lang.Double] = List(vectorizedLeapFrame.head(0)).map(item => new  java.lang.Double(item.toString.toDouble)) ::: List(new  java.lang.Double(request.deviceTypeId.toDouble))
-    vectorizedData.asJava
-
-
-
-  }
-
-
-}
\ No newline at end of file
+}
@@ -41,7 +41,15 @@ struct BidRequest {
   8: i64 biddingPrice,
   9: i64 payingPrice,
   10: string userAgent
-  11: i32 deviceTypeId
+  /**
+   * derived by the server from the user agent when it is not set
+   */
+  11: optional i32 deviceTypeId
+  /**
+   * time after which the response is useless to the caller, in milliseconds since the epoch,
+   * an expired request is answered with the default likelihood without being scored
+   */
+  12: optional i64 deadlineMs
 }
 
 /**
@@ -63,6 +71,12 @@ service BidRequestFilter  {
    */
    BidResponse filter(1: BidRequest request)
 
+  /**
+   * Score a burst of bid requests in one call, the responses
+   * are returned in the same order as the requests
+   */
+   list<BidResponse> filterBatch(1: list<BidRequest> requests)
+
 }
 
 
@@ -0,0 +1,62 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.perfclient;
+
+import com.aik.filterapi.BidRequest;
+import com.aik.prediction.DeviceTypeClassifier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BidRequestLoaderTest {
+
+    private static final String PC = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/96.0.4664.110 Safari/537.36";
+
+    @Test
+    void lineIsParsedAsInTheTrainingDataset() throws Exception {
+        BidRequest bidRequest = BidRequestLoader.parse("{\"BidID\":\"b1\",\"dow\":3,\"hour\":\"12\",\"AdvertiserID\":null,"
+                + "\"Domain\":\"d1\",\"RegionID\":\"1\",\"CityID\":\"2\",\"BiddingPrice\":300,\"UserAgent\":\"" + PC + "\","
+                + "\"Tags\":[\"a\",{\"b\":1}]}");
+        assertEquals("b1", bidRequest.bidId);
+        assertEquals(3, bidRequest.dayOfWeek);
+        assertEquals("12", bidRequest.hour);
+        assertEquals("", bidRequest.advertiserId);
+        assertEquals("d1", bidRequest.domainId);
+        assertEquals("1", bidRequest.regionId);
+        assertEquals("2", bidRequest.cityId);
+        assertEquals(300, bidRequest.biddingPrice);
+        assertEquals(0, bidRequest.payingPrice);
+        assertEquals(PC, bidRequest.userAgent);
+        assertFalse(bidRequest.isSetDeviceTypeId());
+    }
+
+    @Test
+    void everyLineIsLoadedInOrder(@TempDir Path directory) throws Exception {
+        // more lines than the former cap of the client, one malformed
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 25000; i++) {
+            lines.add("{\"BidID\":\"b" + i + "\",\"dow\":\"" + (i % 7) + "\",\"hour\":\"1\",\"Domain\":\"d\","
+                    + "\"RegionID\":\"1\",\"CityID\":\"1\",\"UserAgent\":\"" + PC + "\"}");
+        }
+        lines.add("{\"BidID\":");
+        Path path = directory.resolve("test.json");
+        Files.write(path, lines);
+
+        List<BidRequest> bidRequests = new BidRequestLoader(new DeviceTypeClassifier(16)).load(path);
+        assertEquals(25000, bidRequests.size());
+        for (int i = 0; i < bidRequests.size(); i++) {
+            assertEquals("b" + i, bidRequests.get(i).bidId);
+            assertTrue(bidRequests.get(i).isSetDeviceTypeId());
+            assertEquals(3, bidRequests.get(i).deviceTypeId);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.perfclient;
+
+import com.aik.filterapi.BidRequest;
+import com.aik.filterapi.BidRequestFilter;
+import com.aik.filterapi.BidResponse;
+import org.apache.thrift.TByteArrayOutputStream;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadedSelectorServer;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.apache.thrift.transport.TNonblockingServerSocket;
+import org.apache.thrift.transport.layered.TFramedTransport;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelinedClientTest {
+
+    @Test
+    void framedCallsAreAnsweredByTheSelectorServer() throws Exception {
+        AtomicInteger withDeadline = new AtomicInteger();
+        BidRequestFilter.Iface handler = new BidRequestFilter.Iface() {
+            @Override
+            public BidResponse filter(BidRequest request) {
+                if (request.isSetDeadlineMs()) {
+                    withDeadline.incrementAndGet();
+                }
+                return new BidResponse(request.dayOfWeek / 10.0);
+            }
+
+            @Override
+            public List<BidResponse> filterBatch(List<BidRequest> requests) {
+                return new ArrayList<>();
+            }
+        };
+        TNonblockingServerSocket serverSocket = new TNonblockingServerSocket(0);
+        TServer server = new TThreadedSelectorServer(new TThreadedSelectorServer.Args(serverSocket)
+                .processor(new BidRequestFilter.Processor<>(handler))
+                .transportFactory(new TFramedTransport.Factory())
+                .protocolFactory(new TBinaryProtocol.Factory()));
+        Thread serving = new Thread(server::serve);
+        serving.start();
+        try {
+            while (!server.isServing()) {
+                Thread.sleep(10);
+            }
+            List<BidRequest> bidRequests = new ArrayList<>();
+            for (int dayOfWeek = 0; dayOfWeek < 7; dayOfWeek++) {
+                bidRequests.add(bidRequest(dayOfWeek));
+            }
+            try (PipelinedClient client = new PipelinedClient("localhost", serverSocket.getPort(), 2, 4, 60000, 10000)) {
+                List<FilteringResult> results = client.run(bidRequests, 200, 0);
+
+                assertEquals(200, results.size());
+                for (FilteringResult result : results) {
+                    double dayOfWeek = result.getLikelihood() * 10;
+                    assertTrue(Math.abs(dayOfWeek - Math.round(dayOfWeek)) < 1e-9 && dayOfWeek < 7, String.valueOf(dayOfWeek));
+                }
+            }
+            assertEquals(200, withDeadline.get());
+        } finally {
+            server.stop();
+            serving.join();
+        }
+    }
+
+    @Test
+    void responsesInTheOrderOfTheCallsAreMatched() throws Exception {
+        assertEquals(2, runAgainstReorderingServer(false).size());
+    }
+
+    @Test
+    void responseToAnotherCallDropsTheConnection() throws Exception {
+        // the response to call 1 comes first, neither call can be matched to its scheduled time
+        assertEquals(0, runAgainstReorderingServer(true).size());
+    }
+
+    @Test
+    void connectionClosedByTheServerKeepsTheResultsCollected() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            // answer the first call, close the connection on the second one
+            CompletableFuture<Void> server = CompletableFuture.runAsync(() -> serve(serverSocket, connection -> {
+                DataInputStream in = new DataInputStream(connection.getInputStream());
+                DataOutputStream out = new DataOutputStream(connection.getOutputStream());
+                writeResponse(out, readCall(in));
+                readCall(in);
+            }));
+            try (PipelinedClient client = new PipelinedClient("localhost", serverSocket.getLocalPort(), 1, 1, 0, 10000)) {
+                List<FilteringResult> results = client.run(List.of(bidRequest(1)), 2, 0);
+
+                assertEquals(1, results.size());
+                assertEquals(0.5, results.get(0).getLikelihood());
+            }
+            server.join();
+        }
+    }
+
+    @Test
+    void unansweredCallsTimeOutAndFail() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            // the calls are read and never answered
+            CompletableFuture<Void> server = CompletableFuture.runAsync(() -> serve(serverSocket, connection -> {
+                DataInputStream in = new DataInputStream(connection.getInputStream());
+                readCall(in);
+                readCall(in);
+                awaitClose(in);
+            }));
+            try (PipelinedClient client = new PipelinedClient("localhost", serverSocket.getLocalPort(), 1, 2, 0, 200)) {
+                long start = System.nanoTime();
+                List<FilteringResult> results = client.run(List.of(bidRequest(1)), 3, 0);
+
+                // both calls in flight time out, the third one fails with the dropped connection
+                assertTrue(results.isEmpty());
+                assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            }
+            server.join();
+        }
+    }
+
+    private static List<FilteringResult> runAgainstReorderingServer(boolean reversed) throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(0)) {
+            // both calls are read before they are answered, the pipeline holds two calls
+            CompletableFuture<Void> server = CompletableFuture.runAsync(() -> serve(serverSocket, connection -> {
+                DataInputStream in = new DataInputStream(connection.getInputStream());
+                DataOutputStream out = new DataOutputStream(connection.getOutputStream());
+                int first = readCall(in);
+                int second = readCall(in);
+                writeResponse(out, reversed ? second : first);
+                writeResponse(out, reversed ? first : second);
+                awaitClose(in);
+            }));
+            try (PipelinedClient client = new PipelinedClient("localhost", serverSocket.getLocalPort(), 1, 2, 0, 10000)) {
+                return client.run(List.of(bidRequest(1)), 2, 0);
+            } finally {
+                server.join();
+            }
+        }
+    }
+
+    private interface Exchange {
+        void run(Socket connection) throws Exception;
+    }
+
+    private static void serve(ServerSocket serverSocket, Exchange exchange) {
+        try (Socket connection = serverSocket.accept()) {
+            exchange.run(connection);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * keep the connection until the client closes it, or resets it when it drops the connection with data unread
+     */
+    private static void awaitClose(DataInputStream in) {
+        try {
+            while (in.read() >= 0) {
+                // nothing more is expected
+            }
+        } catch (IOException e) {
+            // closed by the client
+        }
+    }
+
+    /**
+     * read one framed call
+     * @return its sequence id
+     */
+    private static int readCall(DataInputStream in) throws Exception {
+        byte[] frame = new byte[in.readInt()];
+        in.readFully(frame);
+        TProtocol protocol = new TBinaryProtocol(new TMemoryInputTransport(frame));
+        TMessage message = protocol.readMessageBegin();
+        assertEquals("filter", message.name);
+        assertEquals(TMessageType.CALL, message.type);
+        BidRequestFilter.filter_args args = new BidRequestFilter.filter_args();
+        args.read(protocol);
+        protocol.readMessageEnd();
+        assertEquals("bid-1", args.request.bidId);
+        return message.seqid;
+    }
+
+    private static void writeResponse(DataOutputStream out, int sequenceId) throws Exception {
+        TByteArrayOutputStream encoded = new TByteArrayOutputStream();
+        TProtocol protocol = new TBinaryProtocol(new TIOStreamTransport(encoded));
+        protocol.writeMessageBegin(new TMessage("filter", TMessageType.REPLY, sequenceId));
+        new BidRequestFilter.filter_result().setSuccess(new BidResponse(0.5)).write(protocol);
+        protocol.writeMessageEnd();
+        out.writeInt(encoded.len());
+        out.write(encoded.get(), 0, encoded.len());
+        out.flush();
+    }
+
+    private static BidRequest bidRequest(int dayOfWeek) {
+        return new BidRequest("bid-" + dayOfWeek, dayOfWeek, "18", "94", "95", "5Fa-expoBTTR1TJ9", "3358", 300, 75,
+                "Mozilla/5.0");
+    }
+}
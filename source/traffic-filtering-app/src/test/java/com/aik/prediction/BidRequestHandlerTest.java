@@ -0,0 +1,137 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loading, validation and replacement of the model bundles, the artifact versions and the bundles
+ * being given to the handler instead of read from SSM and downloaded.
+ */
+class BidRequestHandlerTest {
+
+    @TempDir
+    Path directory;
+
+    private final AtomicReference<ModelArtifacts> published = new AtomicReference<>(artifacts("1"));
+    private final List<ModelArtifacts> loaded = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Downloader.setCacheDirectory(directory.resolve("cache"));
+    }
+
+    @Test
+    void newVersionIsValidatedAndSwappedIn() {
+        BidRequestHandler handler = handler(artifacts -> bundle(artifacts, true));
+        handler.loadConfig();
+        ModelBundle first = handler.getModel();
+        // a call still in flight on the first bundle
+        assertTrue(first.getFilter().acquire());
+
+        published.set(artifacts("2"));
+        handler.reloadIfChanged();
+
+        assertEquals(artifacts("2"), handler.getModel().getArtifacts());
+        // the replaced filter is only freed once the call in flight releases it
+        assertTrue(first.getFilter().acquire());
+        first.getFilter().release();
+        first.getFilter().release();
+        assertFalse(first.getFilter().acquire());
+        assertTrue(handler.getModel().getFilter().acquire());
+    }
+
+    @Test
+    void failedLoadKeepsTheServingBundle() {
+        BidRequestHandler handler = handler(artifacts -> {
+            if (artifacts.getFilteringModelVersion().equals("2")) {
+                throw new IllegalStateException("unable to download the filtering model");
+            }
+            return bundle(artifacts, true);
+        });
+        handler.loadConfig();
+        ModelBundle first = handler.getModel();
+
+        published.set(artifacts("2"));
+        handler.reloadIfChanged();
+
+        assertSame(first, handler.getModel());
+        assertTrue(first.getFilter().acquire());
+    }
+
+    @Test
+    void invalidBundleIsNotSwappedIn() {
+        BidRequestHandler handler = handler(artifacts -> bundle(artifacts, !artifacts.getFilteringModelVersion().equals("2")));
+        handler.loadConfig();
+        ModelBundle first = handler.getModel();
+
+        published.set(artifacts("2"));
+        handler.reloadIfChanged();
+
+        assertSame(first, handler.getModel());
+        assertTrue(first.getFilter().acquire());
+    }
+
+    @Test
+    void unchangedVersionsAreNotReloaded() {
+        BidRequestHandler handler = handler(artifacts -> bundle(artifacts, true));
+        handler.loadConfig();
+        ModelBundle first = handler.getModel();
+
+        handler.reloadIfChanged();
+        handler.reloadIfChanged();
+
+        assertSame(first, handler.getModel());
+        assertEquals(1, loaded.size());
+    }
+
+    @Test
+    void invalidFirstBundleFailsTheStartup() {
+        BidRequestHandler handler = handler(artifacts -> bundle(artifacts, false));
+
+        assertThrows(IllegalStateException.class, handler::loadConfig);
+    }
+
+    private BidRequestHandler handler(Function<ModelArtifacts, ModelBundle> loader) {
+        return new BidRequestHandler(published::get, artifacts -> {
+            loaded.add(artifacts);
+            return loader.apply(artifacts);
+        });
+    }
+
+    private static ModelArtifacts artifacts(String filteringModelVersion) {
+        return new ModelArtifacts("s3://models/pipeline.zip", "1", "s3://models/schema.json", "1",
+                "s3://models/filtering.bin", filteringModelVersion);
+    }
+
+    /**
+     * @param valid false for a filtering model returning a raw margin outside of [0, 1]
+     */
+    private static ModelBundle bundle(ModelArtifacts artifacts, boolean valid) {
+        FeatureEncoder encoder = new FeatureEncoder(
+                CategoryIndex.of(new String[]{"1458", "3358", "3386"}, true),
+                CategoryIndex.of(new String[]{"trqRTuT-GNTYJNKbuKz", "5Fa-expoBTTR1TJ9"}, true),
+                CategoryIndex.of(new String[]{"1", "94", "216"}, true),
+                CategoryIndex.of(new String[]{"95", "233"}, true));
+        // a single stump on the domain index
+        TreeEnsemble ensemble = new TreeEnsemble(new int[]{0}, new int[]{3, -1, -1}, new float[]{0.5f, 0, 0},
+                new int[]{1, 0, 0}, new int[]{2, 0, 0}, new int[]{1, 0, 0},
+                new float[]{0, valid ? 0.2f : 5f, valid ? -0.3f : 5f}, 0, valid);
+        return new ModelBundle(artifacts, encoder, new BiddingFilter(ensemble));
+    }
+}
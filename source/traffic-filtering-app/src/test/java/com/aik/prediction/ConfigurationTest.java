@@ -0,0 +1,142 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.ssm.SsmClient;
+import software.amazon.awssdk.services.ssm.model.GetParametersByPathRequest;
+import software.amazon.awssdk.services.ssm.model.GetParametersByPathResponse;
+import software.amazon.awssdk.services.ssm.model.Parameter;
+import software.amazon.awssdk.services.ssm.paginators.GetParametersByPathIterable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ConfigurationTest {
+
+    private static final long NO_EXPIRY_MS = Long.MAX_VALUE;
+
+    @Test
+    void environmentOverridesSsmWhichOverridesTheProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("aik.xgboost.path", "s3://property/model.bin");
+        properties.setProperty("aik.pipelineModelArtifactPath", "s3://property/pipeline.zip");
+        properties.setProperty("aik.inference_data", "s3://property/test.json");
+        StubSsm ssm = new StubSsm();
+        ssm.values.put("/aik/xgboost/path", "s3://ssm/model.bin");
+        ssm.values.put("/aik/pipelineModelArtifactPath", "s3://ssm/pipeline.zip");
+        Map<String, String> environment = Collections.singletonMap("AIK_XGBOOST_PATH", "file:///env/model.bin");
+
+        Configuration configuration = new Configuration(properties, environment, ssm, NO_EXPIRY_MS);
+
+        assertEquals("file:///env/model.bin", configuration.get("/aik/xgboost/path"));
+        assertEquals("s3://ssm/pipeline.zip", configuration.get("/aik/pipelineModelArtifactPath"));
+        assertEquals("s3://property/test.json", configuration.get("/aik/inference_data"));
+        assertEquals("", configuration.get("/aik/encoderArtifactPath"));
+    }
+
+    @Test
+    void parametersAreResolvedOnceWithinTheTimeToLive() {
+        StubSsm ssm = new StubSsm();
+        ssm.values.put("/aik/xgboost/path", "s3://ssm/v1.bin");
+        Configuration configuration = new Configuration(new Properties(), Collections.emptyMap(), ssm, NO_EXPIRY_MS);
+
+        configuration.get("/aik/xgboost/path");
+        ssm.values.put("/aik/xgboost/path", "s3://ssm/v2.bin");
+
+        assertEquals("s3://ssm/v1.bin", configuration.get("/aik/xgboost/path"));
+        assertEquals("", configuration.get("/aik/pipelineModelArtifactPath"));
+        assertEquals(1, ssm.calls);
+    }
+
+    @Test
+    void expiredParametersAreResolvedAgain() throws Exception {
+        StubSsm ssm = new StubSsm();
+        ssm.values.put("/aik/xgboost/path", "s3://ssm/v1.bin");
+        Configuration configuration = new Configuration(new Properties(), Collections.emptyMap(), ssm, 1);
+
+        assertEquals("s3://ssm/v1.bin", configuration.get("/aik/xgboost/path"));
+        ssm.values.put("/aik/xgboost/path", "s3://ssm/v2.bin");
+        Thread.sleep(5);
+
+        assertEquals("s3://ssm/v2.bin", configuration.get("/aik/xgboost/path"));
+        assertEquals(2, ssm.calls);
+    }
+
+    @Test
+    void failedResolutionFallsBackAndIsCachedForTheTimeToLive() {
+        Properties properties = new Properties();
+        properties.setProperty("aik.xgboost.path", "s3://property/model.bin");
+        StubSsm ssm = new StubSsm();
+        ssm.failing = true;
+        Configuration configuration = new Configuration(properties, Collections.emptyMap(), ssm, NO_EXPIRY_MS);
+
+        assertEquals("s3://property/model.bin", configuration.get("/aik/xgboost/path"));
+        assertEquals("s3://property/model.bin", configuration.get("/aik/xgboost/path"));
+        // SSM is not called again until the time to live expires
+        assertEquals(1, ssm.calls);
+    }
+
+    @Test
+    void failedResolutionKeepsThePreviousValues() throws Exception {
+        StubSsm ssm = new StubSsm();
+        ssm.values.put("/aik/xgboost/path", "s3://ssm/v1.bin");
+        Configuration configuration = new Configuration(new Properties(), Collections.emptyMap(), ssm, 1);
+        assertEquals("s3://ssm/v1.bin", configuration.get("/aik/xgboost/path"));
+
+        ssm.failing = true;
+        Thread.sleep(5);
+
+        assertEquals("s3://ssm/v1.bin", configuration.get("/aik/xgboost/path"));
+        assertEquals(2, ssm.calls);
+    }
+
+    @Test
+    void parameterNamesMapToTheirOverrides() {
+        assertEquals("AIK_XGBOOST_PATH", Configuration.environmentName("/aik/xgboost/path"));
+        assertEquals("aik.xgboost.path", Configuration.propertyName("/aik/xgboost/path"));
+    }
+
+    /**
+     * SSM holding the given parameters on a single page, or unreachable
+     */
+    private static final class StubSsm implements SsmClient {
+        private final Map<String, String> values = new HashMap<>();
+        private boolean failing;
+        private int calls;
+
+        @Override
+        public GetParametersByPathResponse getParametersByPath(GetParametersByPathRequest request) {
+            calls++;
+            if (failing) {
+                throw SdkClientException.create("ssm unreachable");
+            }
+            return GetParametersByPathResponse.builder()
+                    .parameters(values.entrySet().stream()
+                            .map(value -> Parameter.builder().name(value.getKey()).value(value.getValue()).build())
+                            .collect(Collectors.toList()))
+                    .build();
+        }
+
+        @Override
+        public GetParametersByPathIterable getParametersByPathPaginator(GetParametersByPathRequest request) {
+            return new GetParametersByPathIterable(this, request);
+        }
+
+        @Override
+        public String serviceName() {
+            return SERVICE_NAME;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,46 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceTypeClassifierTest {
+
+    private static final String PC = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/96.0.4664.110 Safari/537.36";
+    private static final String SMARTPHONE = "Mozilla/5.0 (iPhone; CPU iPhone OS 15_2 like Mac OS X) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/15.2 Mobile/15E148 Safari/604.1";
+
+    @Test
+    void userAgentsAreClassifiedAsInTheTrainingNotebook() {
+        DeviceTypeClassifier classifier = new DeviceTypeClassifier(16);
+        assertEquals(3, classifier.deviceTypeId(PC));
+        assertEquals(0, classifier.deviceTypeId(SMARTPHONE));
+    }
+
+    @Test
+    void cachedUserAgentKeepsItsDeviceType() {
+        // a single slot, every user agent evicts the previous one
+        DeviceTypeClassifier classifier = new DeviceTypeClassifier(1);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(3, classifier.deviceTypeId(PC));
+            assertTrue(classifier.isCached(PC));
+            assertEquals(3, classifier.deviceTypeId(PC));
+            assertEquals(0, classifier.deviceTypeId(SMARTPHONE));
+            assertTrue(classifier.isCached(SMARTPHONE));
+            assertFalse(classifier.isCached(PC));
+        }
+    }
+
+    @Test
+    void missingUserAgentGetsADeviceTypeKnownByTheModel() {
+        DeviceTypeClassifier classifier = new DeviceTypeClassifier(16);
+        for (String userAgent : new String[]{null, "", "not a browser"}) {
+            int deviceTypeId = classifier.deviceTypeId(userAgent);
+            assertTrue(deviceTypeId >= 0 && deviceTypeId <= DeviceTypeClassifier.MAX_DEVICE_TYPE, String.valueOf(userAgent));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownloaderTest {
+
+    @TempDir
+    Path directory;
+
+    private Path cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = directory.resolve("cache");
+        Downloader.setCacheDirectory(cache);
+    }
+
+    @Test
+    void unchangedArtifactIsServedFromTheCache() throws Exception {
+        Path artifact = Files.write(directory.resolve("filtering-model.bin"), new byte[]{1, 2, 3});
+        String uri = artifact.toUri().toString();
+
+        String version = Downloader.getVersion(uri);
+        Path first = Paths.get(Downloader.fetch(uri, version, ".bin"));
+        FileTime fetchedAt = Files.getLastModifiedTime(first);
+        Path second = Paths.get(Downloader.fetch(uri, Downloader.getVersion(uri), ".bin"));
+
+        assertEquals(first, second);
+        assertEquals(fetchedAt, Files.getLastModifiedTime(second));
+        assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(second));
+        try (Stream<Path> files = Files.list(cache)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void overwrittenArtifactIsFetchedAgain() throws Exception {
+        Path artifact = Files.write(directory.resolve("schema.json"), "{}".getBytes());
+        String uri = artifact.toUri().toString();
+        String first = Downloader.fetch(uri, Downloader.getVersion(uri), ".json");
+
+        Files.write(artifact, "{\"dow\":\"IntegerType\"}".getBytes());
+        String version = Downloader.getVersion(uri);
+        String second = Downloader.fetchAsync(uri, version, ".json").join();
+
+        assertNotEquals(first, second);
+        assertEquals("{\"dow\":\"IntegerType\"}", new String(Files.readAllBytes(Paths.get(second))));
+    }
+
+    @Test
+    void earlierVersionsArePrunedOnceANewOneIsServed() throws Exception {
+        Path artifact = Files.write(directory.resolve("filtering-model.bin"), new byte[]{1});
+        String uri = artifact.toUri().toString();
+        Path other = Files.write(directory.resolve("other-model.bin"), new byte[]{2});
+        String otherCopy = Downloader.fetch(other.toUri().toString(), Downloader.getVersion(other.toUri().toString()), ".bin");
+        String first = Downloader.fetch(uri, "v1", ".bin");
+        String second = Downloader.fetch(uri, "v2", ".bin");
+
+        Downloader.prune(uri, "v2");
+
+        assertFalse(Files.exists(Paths.get(first)));
+        assertTrue(Files.exists(Paths.get(second)));
+        assertTrue(Files.exists(Paths.get(otherCopy)));
+    }
+
+    @Test
+    void unversionedArtifactIsFetchedEveryTime() throws Exception {
+        Path artifact = Files.write(directory.resolve("schema.json"), "{}".getBytes());
+        String uri = artifact.toUri().toString();
+        Downloader.fetch(uri, "", ".json");
+
+        Files.write(artifact, "{\"dow\":\"IntegerType\"}".getBytes());
+        String second = Downloader.fetch(uri, "", ".json");
+
+        assertEquals("{\"dow\":\"IntegerType\"}", new String(Files.readAllBytes(Paths.get(second))));
+    }
+
+    @Test
+    void locationsNeverShareACacheKey() {
+        // "Aa" and "BB" have the same String hash code
+        assertNotEquals(Downloader.cacheKey("file:///Aa", "1"), Downloader.cacheKey("file:///BB", "1"));
+    }
+
+    @Test
+    void artifactIsStreamedFromTheClasspath() {
+        byte[] content = Downloader.read("classpath:config.properties");
+
+        assertTrue(new String(content).contains("aik.inference.server.port"));
+        assertNotEquals("", Downloader.getVersion("classpath:config.properties"));
+    }
+
+    @Test
+    void unknownSchemeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Downloader.read("ftp://models/filtering-model.bin"));
+    }
+}
@@ -0,0 +1,77 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import com.aik.filterapi.BidRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EncoderArtifactTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedEncoderMatchesTheCompiledEncoder() throws Exception {
+        assertMappedEncoderMatches(EncoderArtifact.HASH_INDEX_MIN_LABELS);
+    }
+
+    @Test
+    void hashIndexedEncoderMatchesTheCompiledEncoder() throws Exception {
+        // every column gets a hash index
+        assertMappedEncoderMatches(0);
+    }
+
+    private void assertMappedEncoderMatches(int hashIndexMinLabels) throws Exception {
+        String[] knownRegions = {"94", "216", "1", "80"};
+        FeatureEncoder compiled = new FeatureEncoder(
+                CategoryIndex.of(new String[]{"3358", "1458", "3386", "2259"}, true),
+                CategoryIndex.of(new String[]{"trqRTuT-GNTYJNKbuKz", "5Fa-expoBTTR1TJ9", "域名", "Zécollège", "😀emoji"}, true),
+                CategoryIndex.of(knownRegions, false),
+                CategoryIndex.of(new String[]{"95", "233", "1"}, true));
+        Path artifact = directory.resolve("encoder.bin");
+
+        EncoderArtifact.write(compiled, artifact, hashIndexMinLabels);
+        FeatureEncoder mapped = EncoderArtifact.load(artifact);
+
+        String[] domains = {"trqRTuT-GNTYJNKbuKz", "5Fa-expoBTTR1TJ9", "域名", "Zécollège", "😀emoji", "unknown", "", "域"};
+        String[] regions = {"94", "216", "1", "80", "007", "3"};
+        float[] expected = new float[FeatureEncoder.NB_FEATURES];
+        float[] actual = new float[FeatureEncoder.NB_FEATURES];
+        for (String domain : domains) {
+            for (String region : regions) {
+                BidRequest request = new BidRequest("bid", 2, "13", region, "233", domain, "2259", 300, 75, "").setDeviceTypeId(1);
+                if (!Arrays.asList(knownRegions).contains(region)) {
+                    // the region indexer has no keep bucket, both encoders reject its unseen labels
+                    assertThrows(UnseenLabelException.class, () -> compiled.encode(request, expected));
+                    assertThrows(UnseenLabelException.class, () -> mapped.encode(request, actual));
+                    continue;
+                }
+                compiled.encode(request, expected);
+                mapped.encode(request, actual);
+                assertArrayEquals(expected, actual, domain + " " + region);
+            }
+        }
+        assertArrayEquals(compiled.labels(FeatureEncoder.DOMAIN_COLUMN), mapped.labels(FeatureEncoder.DOMAIN_COLUMN));
+        assertEquals(4, mapped.categoryIndex(FeatureEncoder.REGION_COLUMN).size());
+        assertTrue(Float.isNaN(mapped.categoryIndex(FeatureEncoder.REGION_COLUMN).indexOf("unknown")));
+    }
+
+    @Test
+    void utf8HashOfAStringMatchesTheHashOfItsBytes() {
+        for (String label : new String[]{"", "5Fa-expoBTTR1TJ9", "Zécollège", "域名", "😀emoji"}) {
+            assertEquals(MappedHashCategoryIndex.utf8Hash(label.getBytes(StandardCharsets.UTF_8)),
+                    MappedHashCategoryIndex.utf8Hash(label), label);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import com.aik.filterapi.BidRequest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Allocation of the compiled feature path: the native encoder, reached through FeatureTransformer.transformInto
+ * as Transform does once its pipeline is compiled, and the pure java scoring engine. The rest of a filter call is
+ * out of scope: the MLeap fallback of Transform, the xgboost engine and its DMatrix, and the handler itself,
+ * which allocates the thrift response and the statsd metrics of every call.
+ */
+class FeaturePathAllocationTest {
+
+    private static final int WARM_UP_ITERATIONS = 50_000;
+    private static final int ITERATIONS = 100_000;
+
+    @Test
+    void compiledEncodingAndJavaEngineScoringDoNotAllocate() {
+        FeatureTransformer encoder = new FeatureEncoder(
+                CategoryIndex.of(new String[]{"1458", "3358", "3386"}, true),
+                CategoryIndex.of(new String[]{"trqRTuT-GNTYJNKbuKz", "ersfewfsdfsdfsdf", "5Fa-expoBTTR1TJ9"}, true),
+                CategoryIndex.of(new String[]{"1", "94", "216"}, true),
+                CategoryIndex.of(new String[]{"1", "95", "233"}, true));
+        // a single stump on the domain index
+        TreeEnsemble ensemble = new TreeEnsemble(new int[]{0}, new int[]{3, -1, -1}, new float[]{1.5f, 0, 0},
+                new int[]{1, 0, 0}, new int[]{2, 0, 0}, new int[]{1, 0, 0}, new float[]{0, 0.2f, -0.3f}, 0, true);
+        BiddingFilter filter = new BiddingFilter(ensemble);
+        BidRequest request = new BidRequest("bid-1", 3, "18", "94", "95", "5Fa-expoBTTR1TJ9", "3358", 300, 75,
+                "Mozilla/5.0").setDeviceTypeId(1);
+        float[] features = new float[FeatureEncoder.NB_FEATURES];
+
+        double likelihood = 0;
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            encoder.transformInto(request, features);
+            likelihood += filter.filter(features);
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long baseline = threads.getThreadAllocatedBytes(threadId);
+        baseline = threads.getThreadAllocatedBytes(threadId) - baseline;
+
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            encoder.transformInto(request, features);
+            likelihood += filter.filter(features);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - start - baseline;
+
+        assertTrue(likelihood > 0);
+        assertEquals(0, allocated / ITERATIONS, "bytes allocated per request");
+    }
+
+    @Test
+    void encoderFillsTheModelColumns() {
+        FeatureEncoder encoder = new FeatureEncoder(
+                CategoryIndex.of(new String[]{"1458", "3358"}, true),
+                CategoryIndex.of(new String[]{"trqRTuT-GNTYJNKbuKz", "5Fa-expoBTTR1TJ9"}, true),
+                CategoryIndex.of(new String[]{"94", "216"}, true),
+                CategoryIndex.of(new String[]{"95", "233"}, true));
+        BidRequest request = new BidRequest("bid-2", 6, "07", "216", "1", "5Fa-expoBTTR1TJ9", "1458", 300, 75,
+                "Mozilla/5.0").setDeviceTypeId(2);
+        float[] features = new float[FeatureEncoder.NB_FEATURES];
+
+        encoder.encode(request, features);
+
+        // the unknown city lands in the extra bucket kept for invalid labels
+        assertEquals(6f, features[0]);
+        assertEquals(7f, features[1]);
+        assertEquals(0f, features[2]);
+        assertEquals(1f, features[3]);
+        assertEquals(1f, features[4]);
+        assertEquals(2f, features[5]);
+        assertEquals(2f, features[6]);
+    }
+}
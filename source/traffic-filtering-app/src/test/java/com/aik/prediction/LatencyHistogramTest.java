@@ -0,0 +1,108 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentilesOfAUniformDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+        LatencyHistogram.Snapshot snapshot = snapshot(histogram);
+
+        assertEquals(100_000, snapshot.getTotalCount());
+        assertClose(50_000, snapshot.valueAtPercentile(50));
+        assertClose(99_000, snapshot.valueAtPercentile(99));
+        assertClose(99_900, snapshot.valueAtPercentile(99.9));
+        assertClose(100_000, snapshot.valueAtPercentile(100));
+        assertClose(100_000, snapshot.getMaxValue());
+        assertEquals(1, snapshot.valueAtPercentile(0));
+    }
+
+    @Test
+    void tailOfABimodalDistribution() {
+        // 99% of the calls take 100 us, 1% stall for 10 ms
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(7);
+        for (int i = 0; i < 9_900; i++) {
+            histogram.record(100_000 + random.nextInt(1_000));
+        }
+        for (int i = 0; i < 100; i++) {
+            histogram.record(10_000_000 + random.nextInt(100_000));
+        }
+        LatencyHistogram.Snapshot snapshot = snapshot(histogram);
+
+        assertClose(100_500, snapshot.valueAtPercentile(50), 0.02);
+        assertClose(101_000, snapshot.valueAtPercentile(99), 0.02);
+        assertClose(10_050_000, snapshot.valueAtPercentile(99.9), 0.02);
+        assertClose(10_100_000, snapshot.getMaxValue(), 0.02);
+    }
+
+    @Test
+    void emptySnapshotReportsZero() {
+        LatencyHistogram.Snapshot snapshot = snapshot(new LatencyHistogram());
+
+        assertEquals(0, snapshot.getTotalCount());
+        assertEquals(0, snapshot.valueAtPercentile(99));
+        assertEquals(0, snapshot.getMaxValue());
+    }
+
+    @Test
+    void bucketBoundariesStayWithinTheRelativeError() {
+        for (long nanos = 0; nanos < 64; nanos++) {
+            // the first buckets hold a single value each
+            assertEquals(nanos, LatencyHistogram.valueOf(LatencyHistogram.bucketOf(nanos)));
+        }
+        int previous = LatencyHistogram.bucketOf(63);
+        for (int exponent = 6; exponent <= 40; exponent++) {
+            long subBucketWidth = 1L << (exponent - 5);
+            for (int subBucket = 0; subBucket < 32; subBucket++) {
+                long lowest = (1L << exponent) + subBucket * subBucketWidth;
+                long highest = lowest + subBucketWidth - 1;
+                int bucket = LatencyHistogram.bucketOf(lowest);
+                assertEquals(previous + 1, bucket, "first value of a bucket " + lowest);
+                assertEquals(bucket, LatencyHistogram.bucketOf(highest), "last value of a bucket " + highest);
+                assertWithinBucketError(lowest);
+                assertWithinBucketError(highest);
+                previous = bucket;
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, previous);
+    }
+
+    @Test
+    void outOfRangeValuesAreClamped() {
+        assertEquals(0, LatencyHistogram.bucketOf(-5));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf((1L << 41) - 1));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    private static void assertWithinBucketError(long nanos) {
+        long reported = LatencyHistogram.valueOf(LatencyHistogram.bucketOf(nanos));
+        assertTrue(Math.abs(reported - nanos) <= nanos / 64, nanos + " reported as " + reported);
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertClose(expected, actual, 1 / 64.0);
+    }
+
+    private static void assertClose(long expected, long actual, double relativeError) {
+        assertTrue(Math.abs(actual - expected) <= expected * relativeError, "expected about " + expected + " got " + actual);
+    }
+
+    private static LatencyHistogram.Snapshot snapshot(LatencyHistogram histogram) {
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        histogram.drainTo(counts);
+        return new LatencyHistogram.Snapshot(counts);
+    }
+}
@@ -0,0 +1,31 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyRecorderTest {
+
+    @Test
+    void histogramOfAnEndedThreadIsMergedThenDropped() throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder("test");
+        recorder.record(1000);
+        for (int i = 0; i < 10; i++) {
+            Thread worker = new Thread(() -> recorder.record(2000));
+            worker.start();
+            worker.join();
+        }
+        assertEquals(11, recorder.histogramCount());
+
+        // the latencies of the ended threads are kept, only their histograms go
+        assertEquals(11, recorder.snapshot().getTotalCount());
+        assertEquals(1, recorder.histogramCount());
+
+        recorder.record(1000);
+        assertEquals(1, recorder.snapshot().getTotalCount());
+        assertEquals(1, recorder.histogramCount());
+    }
+}
@@ -0,0 +1,187 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MicroBatcherTest {
+
+    private static final long LONG_US = TimeUnit.SECONDS.toMicros(30);
+
+    @Test
+    void fullBatchIsFlushedWithoutWaitingForTheDelay() throws Exception {
+        RecordingFilter filter = new RecordingFilter();
+        try (MicroBatcher batcher = new MicroBatcher(4, LONG_US, LONG_US, 1)) {
+            List<Double> likelihoods = filterConcurrently(batcher, Collections.nCopies(4, filter));
+
+            assertEquals(List.of(4), filter.batchSizes);
+            assertEquals(List.of(0.0, 0.1, 0.2, 0.3), sorted(likelihoods));
+            assertEquals(0, filter.directCalls.get());
+        }
+    }
+
+    @Test
+    void partialBatchIsFlushedAfterTheMaxDelay() throws Exception {
+        RecordingFilter filter = new RecordingFilter();
+        try (MicroBatcher batcher = new MicroBatcher(32, 1000, LONG_US, 1)) {
+            long start = System.nanoTime();
+            double likelihood = batcher.filter(filter, features(5));
+
+            assertEquals(0.5, likelihood, 1e-6);
+            assertEquals(List.of(1), filter.batchSizes);
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+        }
+    }
+
+    @Test
+    void batchSpanningAReloadIsScoredByTheFilterOfEachRequest() throws Exception {
+        RecordingFilter previous = new RecordingFilter();
+        RecordingFilter reloaded = new RecordingFilter();
+        try (MicroBatcher batcher = new MicroBatcher(4, LONG_US, LONG_US, 1)) {
+            List<Double> likelihoods = filterConcurrently(batcher, List.of(previous, reloaded, previous, reloaded));
+
+            assertEquals(List.of(0.0, 0.1, 0.2, 0.3), sorted(likelihoods));
+            assertEquals(2, previous.rows.size());
+            assertEquals(2, reloaded.rows.size());
+            // every request was scored by the filter it was queued with
+            assertEquals(List.of(0.0f, 0.2f), sortedRows(previous.rows));
+            assertEquals(List.of(0.1f, 0.3f), sortedRows(reloaded.rows));
+        }
+    }
+
+    @Test
+    void failedBatchAnswersMinusOne() throws Exception {
+        RecordingFilter filter = new RecordingFilter() {
+            @Override
+            public double[] filterBatch(float[] features, int nbRows, int nbColumns) {
+                throw new IllegalStateException("booster failure");
+            }
+        };
+        try (MicroBatcher batcher = new MicroBatcher(32, 100, LONG_US, 1)) {
+            assertEquals(-1, batcher.filter(filter, features(5)));
+        }
+    }
+
+    @Test
+    void requestIsScoredOnTheCallerThreadWhenItsBatchIsStuck() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingFilter filter = new RecordingFilter() {
+            @Override
+            public double[] filterBatch(float[] features, int nbRows, int nbColumns) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.filterBatch(features, nbRows, nbColumns);
+            }
+        };
+        try (MicroBatcher batcher = new MicroBatcher(32, 100, 50000, 1)) {
+            assertEquals(0.5, batcher.filter(filter, features(5)), 1e-6);
+            assertEquals(1, filter.directCalls.get());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void closedBatcherScoresOnTheCallerThread() throws Exception {
+        RecordingFilter filter = new RecordingFilter();
+        MicroBatcher batcher = new MicroBatcher(32, 100, LONG_US, 1);
+        batcher.close();
+
+        assertEquals(0.5, batcher.filter(filter, features(5)), 1e-6);
+        assertEquals(1, filter.directCalls.get());
+        assertTrue(filter.batchSizes.isEmpty());
+    }
+
+    /**
+     * submit one request per filter from as many threads, request i carrying feature value i / 10
+     * @return the likelihoods, in no particular order
+     */
+    private static List<Double> filterConcurrently(MicroBatcher batcher, List<RecordingFilter> filters) throws Exception {
+        ExecutorService callers = Executors.newFixedThreadPool(filters.size());
+        try {
+            List<CompletableFuture<Double>> likelihoods = new ArrayList<>();
+            for (int i = 0; i < filters.size(); i++) {
+                RecordingFilter filter = filters.get(i);
+                float[] features = features(i);
+                likelihoods.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return batcher.filter(filter, features);
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, callers));
+            }
+            List<Double> results = new ArrayList<>();
+            for (CompletableFuture<Double> likelihood : likelihoods) {
+                results.add(likelihood.get(10, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private static float[] features(int value) {
+        float[] features = new float[FeatureEncoder.NB_FEATURES];
+        features[0] = value / 10f;
+        return features;
+    }
+
+    private static List<Double> sorted(List<Double> likelihoods) {
+        List<Double> rounded = new ArrayList<>();
+        for (double likelihood : likelihoods) {
+            rounded.add(Math.round(likelihood * 10) / 10.0);
+        }
+        Collections.sort(rounded);
+        return rounded;
+    }
+
+    private static List<Float> sortedRows(List<Float> rows) {
+        List<Float> sorted = new ArrayList<>(rows);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * filter answering the first feature of every row as its likelihood, recording the batches it scored
+     */
+    private static class RecordingFilter extends BiddingFilter {
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        final List<Float> rows = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger directCalls = new AtomicInteger();
+
+        @Override
+        public double filter(float[] features) {
+            directCalls.incrementAndGet();
+            return features[0];
+        }
+
+        @Override
+        public double[] filterBatch(float[] features, int nbRows, int nbColumns) {
+            batchSizes.add(nbRows);
+            double[] likelihoods = new double[nbRows];
+            for (int row = 0; row < nbRows; row++) {
+                rows.add(features[row * nbColumns]);
+                likelihoods[row] = features[row * nbColumns];
+            }
+            return likelihoods;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueueDelayAdmissionTest {
+
+    @Test
+    void requestsRunOutsideOfTheWorkerPoolAreAdmitted() {
+        QueueDelayAdmission admission = new QueueDelayAdmission(1, 1);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(admission.admit());
+        }
+        assertEquals(100, admission.drainAdmitted());
+        assertEquals(0, admission.drainShed());
+    }
+
+    @Test
+    void standingQueueIsShed() throws Exception {
+        // 1 ms target, every request closes the previous interval
+        QueueDelayAdmission admission = new QueueDelayAdmission(1000, 1);
+        ThreadPoolExecutor executor = admission.executor(1, new LinkedBlockingQueue<>(), Thread::new);
+        try {
+            // the single worker is busy, the next requests wait far longer than the target
+            executor.execute(() -> sleep(50));
+            List<Future<Boolean>> decisions = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                decisions.add(executor.submit(admission::admit));
+            }
+            // the first request after the busy one opens a window, the queue is standing from the next one
+            assertTrue(decisions.get(0).get());
+            for (int i = 1; i < decisions.size(); i++) {
+                assertFalse(decisions.get(i).get());
+            }
+            assertEquals(3, admission.drainShed());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScoreCacheTest {
+
+    @Test
+    void distinctFeatureVectorsGetDistinctKeys() {
+        long key = ScoreCache.key(new float[]{3, 14, 2, 1000, 80, 120, 6});
+        assertTrue(key >= 0);
+        assertNotEquals(key, ScoreCache.key(new float[]{3, 14, 2, 1001, 80, 120, 6}));
+        assertNotEquals(key, ScoreCache.key(new float[]{3, 14, 2, Float.NaN, 80, 120, 6}));
+        assertNotEquals(ScoreCache.key(new float[]{0, 0, 0, 0, 0, 0, 0}),
+                ScoreCache.key(new float[]{Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN, Float.NaN}));
+    }
+
+    @Test
+    void vectorsOutsideThePackingAreNotCached() {
+        assertEquals(ScoreCache.NOT_CACHEABLE, ScoreCache.key(new float[]{3, 14, 2, 1 << 20, 80, 120, 6}));
+        assertEquals(ScoreCache.NOT_CACHEABLE, ScoreCache.key(new float[]{3, 14, 2, -1, 80, 120, 6}));
+        assertEquals(ScoreCache.NOT_CACHEABLE, ScoreCache.key(new float[]{3, 14.5f, 2, 1000, 80, 120, 6}));
+    }
+
+    @Test
+    void cachedLikelihoodIsReturnedOnTheNextRequest() {
+        ScoreCache cache = new ScoreCache(1024);
+        long key = ScoreCache.key(new float[]{3, 14, 2, 1000, 80, 120, 6});
+        assertTrue(Double.isNaN(cache.get(key)));
+        cache.put(key, 0.25);
+        assertEquals(0.25, cache.get(key));
+        assertEquals(1, cache.drainHits());
+        assertEquals(1, cache.drainMisses());
+        assertEquals(0, cache.drainHits());
+    }
+
+    @Test
+    void clearedCacheForgetsTheWarmUpVectors() {
+        ScoreCache cache = new ScoreCache(1024);
+        long key = ScoreCache.key(new float[]{3, 14, 2, 1000, 80, 120, 6});
+        cache.get(key);
+        cache.put(key, 0.25);
+        cache.get(key);
+
+        cache.clear();
+
+        assertEquals(0, cache.frequency(key));
+        assertEquals(0, cache.drainHits());
+        assertEquals(0, cache.drainMisses());
+        assertTrue(Double.isNaN(cache.get(key)));
+    }
+
+    @Test
+    void frequentVectorIsNotEvictedByOneOffVectors() {
+        ScoreCache cache = new ScoreCache(64);
+        long hot = ScoreCache.key(new float[]{1, 1, 1, 1, 1, 1, 1});
+        for (int i = 0; i < 15; i++) {
+            if (Double.isNaN(cache.get(hot))) {
+                cache.put(hot, 0.5);
+            }
+        }
+        for (int domain = 2; domain < 200; domain++) {
+            long key = ScoreCache.key(new float[]{1, 1, 1, domain, 1, 1, 1});
+            if (Double.isNaN(cache.get(key))) {
+                cache.put(key, 0.1);
+            }
+        }
+        assertEquals(0.5, cache.get(hot));
+    }
+}
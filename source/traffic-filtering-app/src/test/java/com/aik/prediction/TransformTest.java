@@ -0,0 +1,140 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import com.aik.filterapi.BidRequest;
+import ml.combust.mleap.core.feature.HandleInvalid$;
+import ml.combust.mleap.core.feature.StringIndexerModel;
+import ml.combust.mleap.core.types.NodeShape;
+import ml.combust.mleap.core.types.Socket;
+import ml.combust.mleap.core.types.StructType;
+import ml.combust.mleap.runtime.frame.Transformer;
+import ml.combust.mleap.runtime.transformer.Pipeline;
+import ml.combust.mleap.runtime.transformer.PipelineModel;
+import ml.combust.mleap.runtime.transformer.feature.StringIndexer;
+import org.junit.jupiter.api.Test;
+import scala.collection.JavaConverters;
+import scala.collection.Seq;
+import scala.collection.immutable.ListMap$;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The compiled encoder against the MLeap pipeline it is compiled from, on the same bid requests.
+ */
+class TransformTest {
+
+    // schema.json of the training pipeline, in the order the fields of a bid request are put in a row
+    private static final String SCHEMA = "{\"BidID\":\"StringType\",\"dow\":\"IntegerType\",\"hour\":\"StringType\","
+            + "\"RegionID\":\"StringType\",\"CityID\":\"StringType\",\"Domain\":\"StringType\","
+            + "\"AdvertiserID\":\"StringType\",\"BiddingPrice\":\"LongType\",\"PayingPrice\":\"LongType\","
+            + "\"UserAgent\":\"StringType\"}";
+
+    // a known label, unseen labels and no label, for every categorical column
+    private static final String[] ADVERTISERS = {"3358", "1459", null};
+    private static final String[] DOMAINS = {"5Fa-expoBTTR1TJ9", "unknown", null};
+    private static final String[] REGIONS = {"216", "094", null};
+    private static final String[] CITIES = {"95", "234", null};
+    private static final String[] HOURS = {"07", ""};
+
+    @Test
+    void encoderMatchesThePipelineKeepingInvalidLabels() {
+        assertEncoderMatchesThePipeline("keep");
+    }
+
+    @Test
+    void encoderRejectsTheRequestsThePipelineRejects() {
+        assertEncoderMatchesThePipeline("error");
+    }
+
+    @Test
+    void pipelineIndexingAnotherFieldIsNotCompiled() {
+        Transformer pipeline = pipeline("keep", "AdvertiserID", "AdvertiserID", "RegionID", "CityID");
+
+        assertTrue(Transform$.MODULE$.compileEncoder(pipeline).isEmpty());
+        assertNull(new Transform(pipeline, schema()).encoder());
+    }
+
+    private static void assertEncoderMatchesThePipeline(String handleInvalid) {
+        Transform transform = new Transform(pipeline(handleInvalid, "AdvertiserID", "Domain", "RegionID", "CityID"), schema());
+        FeatureEncoder encoder = transform.encoder();
+        assertNotNull(encoder);
+
+        float[] expected = new float[FeatureEncoder.NB_FEATURES];
+        float[] actual = new float[FeatureEncoder.NB_FEATURES];
+        for (String hour : HOURS) {
+            for (String advertiser : ADVERTISERS) {
+                for (String domain : DOMAINS) {
+                    for (String region : REGIONS) {
+                        for (String city : CITIES) {
+                            BidRequest request = new BidRequest("bid", 3, hour, region, city, domain, advertiser,
+                                    300, 75, "Mozilla/5.0").setDeviceTypeId(2);
+                            String label = handleInvalid + " " + hour + " " + advertiser + " " + domain + " "
+                                    + region + " " + city;
+                            if (pipelineRejects(transform, request, expected)) {
+                                assertThrows(UnseenLabelException.class, () -> encoder.encode(request, actual), label);
+                            } else {
+                                encoder.encode(request, actual);
+                                assertArrayEquals(expected, actual, label);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true when MLeap fails on the request, the handler then answers it with the default likelihood
+     */
+    private static boolean pipelineRejects(Transform transform, BidRequest request, float[] features) {
+        try {
+            transform.pipelineTransformBatchInto(Collections.singletonList(request), features);
+            return false;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    private static StructType schema() {
+        return Transform$.MODULE$.parseSchema(SCHEMA.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * the StringIndexer stages of the training notebook, one per categorical column
+     */
+    private static Transformer pipeline(String handleInvalid, String advertiserInput, String domainInput,
+                                        String regionInput, String cityInput) {
+        List<Transformer> indexers = Arrays.asList(
+                indexer(advertiserInput, FeatureEncoder.ADVERTISER_COLUMN, handleInvalid, "1458", "3358", "3386"),
+                indexer(domainInput, FeatureEncoder.DOMAIN_COLUMN, handleInvalid, "trqRTuT-GNTYJNKbuKz", "5Fa-expoBTTR1TJ9"),
+                indexer(regionInput, FeatureEncoder.REGION_COLUMN, handleInvalid, "94", "216", "1"),
+                indexer(cityInput, FeatureEncoder.CITY_COLUMN, handleInvalid, "95", "233"));
+        return new Pipeline("pipeline", emptyShape(), new PipelineModel(seq(indexers)));
+    }
+
+    private static Transformer indexer(String input, String output, String handleInvalid, String... labels) {
+        NodeShape shape = emptyShape().withStandardInput(input).withStandardOutput(output);
+        StringIndexerModel model = new StringIndexerModel(seq(Collections.singletonList(seq(Arrays.asList(labels)))),
+                HandleInvalid$.MODULE$.fromString(handleInvalid, true));
+        return new StringIndexer("indexer_" + output, shape, model);
+    }
+
+    private static NodeShape emptyShape() {
+        return new NodeShape(ListMap$.MODULE$.<String, Socket>empty(), ListMap$.MODULE$.<String, Socket>empty());
+    }
+
+    private static <T> Seq<T> seq(List<T> values) {
+        return JavaConverters.asScalaBuffer(values).toList();
+    }
+}
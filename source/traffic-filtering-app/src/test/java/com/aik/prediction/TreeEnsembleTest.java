@@ -0,0 +1,104 @@
+// Copyright Amazon.com, Inc. or its affiliates. All Rights Reserved.
+// SPDX-License-Identifier: MIT-0
+
+package com.aik.prediction;
+
+import ml.dmlc.xgboost4j.java.Booster;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.XGBoost;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TreeEnsembleTest {
+
+    // dow, hour, advertiser, domain, region, city, device type
+    private static final int NB_FEATURES = 7;
+
+    @TempDir
+    Path modelDirectory;
+
+    @Test
+    void scoresMatchTheNativeBooster() throws Exception {
+        Random random = new Random(42);
+        int nbTrainRows = 2000;
+        float[] train = randomRows(random, nbTrainRows);
+        float[] labels = new float[nbTrainRows];
+        for (int row = 0; row < nbTrainRows; row++) {
+            float hour = train[row * NB_FEATURES + 1];
+            float domain = train[row * NB_FEATURES + 3];
+            float device = train[row * NB_FEATURES + 6];
+            boolean clicked = (hour > 18 && device < 2) || domain % 7 == 0 || random.nextFloat() < 0.1f;
+            labels[row] = clicked ? 1f : 0f;
+        }
+        DMatrix trainMatrix = new DMatrix(train, nbTrainRows, NB_FEATURES, Float.NaN);
+        trainMatrix.setLabel(labels);
+        Map<String, Object> params = new HashMap<>();
+        params.put("objective", "binary:logistic");
+        params.put("max_depth", 5);
+        params.put("eta", 0.2);
+        params.put("base_score", 0.3);
+        params.put("seed", 42);
+        Booster trained = XGBoost.train(trainMatrix, params, 50, new HashMap<>(), null, null);
+
+        // go through the same binary model file as the filtering server
+        String modelLocation = modelDirectory.resolve("filtering-model.bin").toString();
+        trained.saveModel(modelLocation);
+        Booster booster = XGBoost.loadModel(modelLocation);
+        TreeEnsemble ensemble = TreeEnsemble.fromBooster(booster);
+
+        int nbTestRows = 1000;
+        float[] test = randomRows(random, nbTestRows);
+        float[][] expected = booster.predict(new DMatrix(test, nbTestRows, NB_FEATURES, Float.NaN));
+        float[] row = new float[NB_FEATURES];
+        for (int i = 0; i < nbTestRows; i++) {
+            System.arraycopy(test, i * NB_FEATURES, row, 0, NB_FEATURES);
+            assertEquals(expected[i][0], ensemble.predict(row), 1e-6, "score of row " + i);
+        }
+    }
+
+    @Test
+    void splitsOnIndexedOrNamedFeaturesAreResolved() {
+        assertEquals(0, TreeEnsemble.featureIndex("f0", FeatureEncoder.FEATURE_NAMES));
+        assertEquals(12, TreeEnsemble.featureIndex("f12", FeatureEncoder.FEATURE_NAMES));
+        assertEquals(3, TreeEnsemble.featureIndex("IndexDomain", FeatureEncoder.FEATURE_NAMES));
+        assertEquals(6, TreeEnsemble.featureIndex("device_type_id", FeatureEncoder.FEATURE_NAMES));
+    }
+
+    @Test
+    void splitOnAnUnknownFeatureIsRejected() {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> TreeEnsemble.featureIndex("price", FeatureEncoder.FEATURE_NAMES));
+        assertEquals("the filtering model splits on feature price, expected f<index> or one of "
+                + "[dow, hour, IndexAdvertiserID, IndexDomain, IndexRegionID, IndexCityID, device_type_id]",
+                error.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> TreeEnsemble.featureIndex("f", FeatureEncoder.FEATURE_NAMES));
+        assertThrows(IllegalArgumentException.class, () -> TreeEnsemble.featureIndex("f1x", FeatureEncoder.FEATURE_NAMES));
+    }
+
+    private static float[] randomRows(Random random, int nbRows) {
+        float[] rows = new float[nbRows * NB_FEATURES];
+        for (int row = 0; row < nbRows; row++) {
+            int offset = row * NB_FEATURES;
+            rows[offset] = 1 + random.nextInt(7);
+            rows[offset + 1] = random.nextInt(24);
+            rows[offset + 2] = random.nextInt(10);
+            rows[offset + 3] = random.nextInt(500);
+            rows[offset + 4] = random.nextInt(40);
+            rows[offset + 5] = random.nextInt(400);
+            rows[offset + 6] = random.nextInt(7);
+            // unseen categories reach the model as missing values
+            if (random.nextFloat() < 0.05f) {
+                rows[offset + 3] = Float.NaN;
+            }
+        }
+        return rows;
+    }
+}